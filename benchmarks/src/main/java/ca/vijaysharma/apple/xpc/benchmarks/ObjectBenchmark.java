@@ -0,0 +1,52 @@
+package ca.vijaysharma.apple.xpc.benchmarks;
+
+import ca.vijaysharma.apple.xpc.XPCDictionary;
+import ca.vijaysharma.apple.xpc.XPCObject;
+import ca.vijaysharma.apple.xpc.exceptions.XPCException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode and decode throughput of {@link XPCObject#bytes(XPCObject)} and
+ * {@link XPCObject#from(byte[])}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ObjectBenchmark {
+    @Param({ "flat", "deep", "blob", "strings" })
+    public String payload;
+
+    private XPCDictionary object;
+    private byte[] bytes;
+
+    @Setup
+    public void setup() throws XPCException {
+        this.object = Payloads.create(this.payload);
+        this.bytes = XPCObject.bytes(this.object);
+    }
+
+    @Benchmark
+    public byte[] encode() throws XPCException {
+        return XPCObject.bytes(this.object);
+    }
+
+    @Benchmark
+    public XPCObject decode() throws XPCException {
+        return XPCObject.from(this.bytes);
+    }
+}
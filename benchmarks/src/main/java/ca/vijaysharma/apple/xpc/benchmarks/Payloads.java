@@ -0,0 +1,83 @@
+package ca.vijaysharma.apple.xpc.benchmarks;
+
+import ca.vijaysharma.apple.xpc.XPCArray;
+import ca.vijaysharma.apple.xpc.XPCBool;
+import ca.vijaysharma.apple.xpc.XPCData;
+import ca.vijaysharma.apple.xpc.XPCDictionary;
+import ca.vijaysharma.apple.xpc.XPCDouble;
+import ca.vijaysharma.apple.xpc.XPCInt64;
+import ca.vijaysharma.apple.xpc.XPCObject;
+import ca.vijaysharma.apple.xpc.XPCString;
+import ca.vijaysharma.apple.xpc.XPCUUID;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Representative payloads shared by the benchmarks. Every payload is a dictionary so it can
+ * also be sent as an {@link ca.vijaysharma.apple.xpc.XPCWrapper} payload.
+ */
+final class Payloads {
+    private Payloads() {}
+
+    static XPCDictionary create(String name) {
+        return switch (name) {
+            case "flat" -> flat(64);
+            case "deep" -> deep(32);
+            case "blob" -> blob(1024 * 1024);
+            case "strings" -> strings(10_000);
+            default -> throw new IllegalArgumentException("Unknown payload " + name);
+        };
+    }
+
+    /** One dictionary with a mix of scalar values, like a device status record. */
+    static XPCDictionary flat(int keys) {
+        var map = new HashMap<String, XPCObject>();
+        for (int index = 0; index < keys; index++) {
+            var value = switch (index % 5) {
+                case 0 -> new XPCInt64(index);
+                case 1 -> new XPCString("value-" + index);
+                case 2 -> new XPCBool(index % 2 == 0);
+                case 3 -> new XPCDouble(index / 7.0);
+                default -> new XPCUUID(new UUID(index, index));
+            };
+            map.put("Key" + index, value);
+        }
+        return new XPCDictionary(map);
+    }
+
+    /** Dictionaries nested {@code depth} levels deep, each with a few siblings. */
+    static XPCDictionary deep(int depth) {
+        XPCDictionary child = flat(4);
+        for (int level = 0; level < depth; level++) {
+            child = new XPCDictionary(Map.of(
+                "Level", new XPCInt64(level),
+                "Name", new XPCString("level-" + level),
+                "Child", child
+            ));
+        }
+        return child;
+    }
+
+    /** A single large data blob, like a file transfer chunk. */
+    static XPCDictionary blob(int size) {
+        var bytes = new byte[size];
+        new Random(42).nextBytes(bytes);
+        return new XPCDictionary(Map.of(
+            "Name", new XPCString("capture.bin"),
+            "Data", new XPCData(bytes)
+        ));
+    }
+
+    /** A long array of short strings, like a file listing or log batch. */
+    static XPCDictionary strings(int count) {
+        var items = new ArrayList<XPCObject>(count);
+        for (int index = 0; index < count; index++) {
+            items.add(new XPCString("/private/var/mobile/Media/DCIM/IMG_" + index + ".HEIC"));
+        }
+        return new XPCDictionary(Map.of("Items", new XPCArray(items)));
+    }
+}
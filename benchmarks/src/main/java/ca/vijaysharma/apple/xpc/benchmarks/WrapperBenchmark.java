@@ -0,0 +1,78 @@
+package ca.vijaysharma.apple.xpc.benchmarks;
+
+import ca.vijaysharma.apple.xpc.XPCBufferPool;
+import ca.vijaysharma.apple.xpc.XPCDictionary;
+import ca.vijaysharma.apple.xpc.XPCStreamWriter;
+import ca.vijaysharma.apple.xpc.XPCWrapper;
+import ca.vijaysharma.apple.xpc.exceptions.XPCException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static ca.vijaysharma.apple.xpc.XPCWrapper.XPCFlags.ALWAYS_SET;
+import static ca.vijaysharma.apple.xpc.XPCWrapper.XPCFlags.WANTING_REPLY;
+
+/**
+ * Throughput of {@link XPCWrapper#bytes(long, XPCDictionary, XPCWrapper.XPCFlags...)},
+ * {@link XPCWrapper#from(byte[])} and a full round trip through both. {@code encodePooled}
+ * encodes into a reused {@link XPCStreamWriter} backed by an {@link XPCBufferPool}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WrapperBenchmark {
+    @Param({ "flat", "deep", "blob", "strings" })
+    public String payload;
+
+    private XPCDictionary object;
+    private byte[] bytes;
+    private XPCStreamWriter writer;
+
+    @Setup
+    public void setup() throws XPCException {
+        this.object = Payloads.create(this.payload);
+        this.bytes = XPCWrapper.bytes(1, this.object, ALWAYS_SET, WANTING_REPLY);
+        this.writer = new XPCStreamWriter(new XPCBufferPool(4, 16 * 1024 * 1024));
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.writer.close();
+    }
+
+    @Benchmark
+    public byte[] encode() throws XPCException {
+        return XPCWrapper.bytes(1, this.object, ALWAYS_SET, WANTING_REPLY);
+    }
+
+    @Benchmark
+    public int encodePooled() throws XPCException {
+        this.writer.reset();
+        this.writer.writeWrapper(1, this.object, ALWAYS_SET, WANTING_REPLY);
+        return this.writer.size();
+    }
+
+    @Benchmark
+    public XPCWrapper decode() throws XPCException {
+        return XPCWrapper.from(this.bytes);
+    }
+
+    @Benchmark
+    public XPCWrapper roundTrip() throws XPCException {
+        return XPCWrapper.from(XPCWrapper.bytes(1, this.object, ALWAYS_SET, WANTING_REPLY));
+    }
+}
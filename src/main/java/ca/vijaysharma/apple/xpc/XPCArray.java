@@ -6,6 +6,15 @@ import java.util.Map;
 import static ca.vijaysharma.apple.xpc.XPCType.XPC_ARRAY;
 import static ca.vijaysharma.apple.xpc.XPCType.XPC_DICTIONARY;
 
+/**
+ * An ordered list of values. Arrays returned by the decoder are read-only whatever their
+ * contents: homogeneous int64, double and bool arrays are packed into {@link XPCInt64Array},
+ * {@link XPCDoubleArray} or {@link XPCBoolArray}, other arrays are unmodifiable lists, and lazily
+ * decoded arrays are views over the encoded bytes. Copy the list to change it.
+ *
+ * <p>The packed types wrap the primitive array given to their constructor without copying it,
+ * so the caller must not modify it afterwards; their {@code value()} returns a copy.
+ */
 public record XPCArray(List<XPCObject> value) implements XPCObject {
     @Override
     public XPCType type() {
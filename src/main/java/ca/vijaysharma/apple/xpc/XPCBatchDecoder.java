@@ -0,0 +1,125 @@
+package ca.vijaysharma.apple.xpc;
+
+import ca.vijaysharma.apple.xpc.exceptions.XPCException;
+import ca.vijaysharma.apple.xpc.exceptions.XPCUncheckedException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Decodes encoded {@link XPCWrapper} frames on an executor while returning them in input order.
+ * At most {@code window} frames are in flight at a time: the next frame is only submitted once
+ * the oldest decoded one has been handed out, which bounds memory use for unbounded inputs.
+ *
+ * <pre>{@code
+ * var decoder = new XPCBatchDecoder(ForkJoinPool.commonPool(), 64);
+ * decoder.decode(frames.stream()).forEach(ingest::accept);
+ * }</pre>
+ */
+public class XPCBatchDecoder {
+    private final Executor executor;
+    private final int window;
+
+    /**
+     * Decodes on the common pool with a window of four frames per worker.
+     */
+    public XPCBatchDecoder() {
+        this(ForkJoinPool.commonPool(), 4 * ForkJoinPool.getCommonPoolParallelism());
+    }
+
+    /**
+     * @param window largest number of frames submitted to {@code executor} but not yet returned
+     */
+    public XPCBatchDecoder(Executor executor, int window) {
+        if (window < 1) {
+            throw new IllegalArgumentException("Window must be positive (" + window + ")");
+        }
+        this.executor = executor;
+        this.window = window;
+    }
+
+    /**
+     * Decodes every frame and returns them in the same order, or throws the exception of the
+     * first frame, in input order, that fails to decode.
+     */
+    public List<XPCWrapper> decode(List<byte[]> frames) throws XPCException {
+        var decoded = new ArrayList<XPCWrapper>(frames.size());
+        try {
+            new Window(frames.iterator()).forEachRemaining(decoded::add);
+        } catch (XPCUncheckedException e) {
+            throw e.getCause();
+        }
+        return decoded;
+    }
+
+    /**
+     * Lazily decodes {@code frames} in order; frames are pulled from the source as the result is
+     * consumed. Frames that fail to decode are reported as {@link XPCUncheckedException}.
+     */
+    public Stream<XPCWrapper> decode(Stream<byte[]> frames) {
+        var spliterator = Spliterators.spliteratorUnknownSize(
+            new Window(frames.iterator()),
+            Spliterator.ORDERED | Spliterator.NONNULL
+        );
+        return StreamSupport.stream(spliterator, false).onClose(frames::close);
+    }
+
+    private class Window implements Iterator<XPCWrapper> {
+        private final Iterator<byte[]> source;
+        private final ArrayDeque<CompletableFuture<XPCWrapper>> pending;
+
+        Window(Iterator<byte[]> source) {
+            this.source = source;
+            this.pending = new ArrayDeque<>(XPCBatchDecoder.this.window);
+        }
+
+        @Override
+        public boolean hasNext() {
+            fill();
+            return !this.pending.isEmpty();
+        }
+
+        @Override
+        public XPCWrapper next() {
+            fill();
+            var head = this.pending.poll();
+            if (head == null) {
+                throw new NoSuchElementException();
+            }
+            try {
+                return head.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+
+        private void fill() {
+            while (this.pending.size() < XPCBatchDecoder.this.window && this.source.hasNext()) {
+                var frame = this.source.next();
+                this.pending.add(CompletableFuture.supplyAsync(() -> decode(frame), XPCBatchDecoder.this.executor));
+            }
+        }
+    }
+
+    private static XPCWrapper decode(byte[] frame) {
+        try {
+            return XPCWrapper.from(frame);
+        } catch (XPCException e) {
+            throw new XPCUncheckedException(e);
+        }
+    }
+}
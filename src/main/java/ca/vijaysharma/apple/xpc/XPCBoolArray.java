@@ -0,0 +1,27 @@
+package ca.vijaysharma.apple.xpc;
+
+/**
+ * Packed contents for an {@link XPCArray} of booleans, see {@link XPCPackedArray}.
+ */
+public final class XPCBoolArray extends XPCPackedArray<boolean[]> {
+    public XPCBoolArray(boolean[] value) {
+        super(value, value.length);
+    }
+
+    /**
+     * A copy of the values.
+     */
+    public boolean[] value() {
+        return this.array.clone();
+    }
+
+    @Override
+    XPCType elementType() {
+        return XPCType.XPC_BOOL;
+    }
+
+    @Override
+    XPCObject element(int index) {
+        return new XPCBool(this.array[index]);
+    }
+}
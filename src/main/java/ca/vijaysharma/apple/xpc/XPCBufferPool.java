@@ -0,0 +1,64 @@
+package ca.vijaysharma.apple.xpc;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Bounded, thread safe pool of encode buffers. At most {@code maxBuffers} buffers, each of at
+ * most {@code maxBufferCapacity} bytes, are retained; larger buffers and buffers released into a
+ * full pool are left to the garbage collector. Buffers are handed out cleared and little endian.
+ */
+public class XPCBufferPool {
+    private static final int MIN_CAPACITY = 4096;
+
+    private final ArrayBlockingQueue<ByteBuffer> buffers;
+    private final int maxBufferCapacity;
+    private final boolean direct;
+
+    public XPCBufferPool(int maxBuffers, int maxBufferCapacity) {
+        this(maxBuffers, maxBufferCapacity, false);
+    }
+
+    /**
+     * @param direct whether to allocate direct buffers, which channels can write without an
+     *               intermediate copy
+     */
+    public XPCBufferPool(int maxBuffers, int maxBufferCapacity, boolean direct) {
+        this.buffers = new ArrayBlockingQueue<>(maxBuffers);
+        this.maxBufferCapacity = maxBufferCapacity;
+        this.direct = direct;
+    }
+
+    /**
+     * Returns a cleared buffer with at least {@code minCapacity} bytes of space. A pooled buffer
+     * that is too small is dropped rather than returned to the pool, so the pool converges on
+     * the sizes that are actually requested.
+     */
+    public ByteBuffer acquire(int minCapacity) {
+        var buffer = this.buffers.poll();
+        if (buffer != null && buffer.capacity() >= minCapacity) {
+            return buffer.clear().order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        var capacity = Math.max(minCapacity, MIN_CAPACITY);
+        buffer = this.direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+        return buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Returns {@code buffer} to the pool. The caller must not use it afterwards.
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer.capacity() <= this.maxBufferCapacity && buffer.isDirect() == this.direct) {
+            this.buffers.offer(buffer);
+        }
+    }
+
+    /**
+     * Number of buffers currently waiting in the pool.
+     */
+    public int available() {
+        return this.buffers.size();
+    }
+}
@@ -0,0 +1,224 @@
+package ca.vijaysharma.apple.xpc;
+
+import ca.vijaysharma.apple.xpc.exceptions.XPCException;
+import ca.vijaysharma.apple.xpc.exceptions.XPCInvalidValueException;
+import ca.vijaysharma.apple.xpc.exceptions.XPCUncheckedException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static ca.vijaysharma.apple.xpc.XPCWrapper.HEADER_LENGTH;
+
+/**
+ * Random access to a capture file of back to back {@link XPCWrapper} frames. The file is
+ * memory mapped and indexed with a single scan over the frame headers; frames are decoded from
+ * the mapping on access, so the file itself is never copied onto the heap.
+ *
+ * <p>Files larger than a single mapping are mapped in segments that always start on a frame
+ * boundary, so every frame lies within one segment. A truncated frame at the end of the file,
+ * such as one that is still being written, is not indexed. Instances are safe to use from
+ * multiple threads, and {@link #stream()} splits the index for parallel streams.
+ */
+public class XPCCaptureReader implements Closeable {
+    private static final long MAX_SEGMENT_LENGTH = Integer.MAX_VALUE;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final long[] offsets;
+    private final int[] positions;
+    private final int[] lengths;
+    private final int[] frameSegments;
+    private final int count;
+
+    public XPCCaptureReader(Path path) throws IOException, XPCException {
+        this(path, MAX_SEGMENT_LENGTH);
+    }
+
+    XPCCaptureReader(Path path, long maxSegmentLength) throws IOException, XPCException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            var size = this.channel.size();
+            var segments = new ArrayList<MappedByteBuffer>();
+            var offsets = new long[16];
+            var positions = new int[16];
+            var lengths = new int[16];
+            var frameSegments = new int[16];
+            var count = 0;
+
+            var start = 0L;
+            while (start < size) {
+                var segment = map(start, Math.min(maxSegmentLength, size - start));
+                var position = 0;
+                var next = -1L;
+                while (segment.capacity() - position >= HEADER_LENGTH) {
+                    var length = frameLength(segment.getInt(position), segment.getLong(position + 8), start + position);
+                    if (length > maxSegmentLength) {
+                        throw new XPCInvalidValueException("XPC Wrapper at " + (start + position) + " is larger than a mapped segment");
+                    }
+                    if (length > segment.capacity() - position) {
+                        next = start + position;
+                        break;
+                    }
+                    if (count == offsets.length) {
+                        offsets = Arrays.copyOf(offsets, count * 2);
+                        positions = Arrays.copyOf(positions, count * 2);
+                        lengths = Arrays.copyOf(lengths, count * 2);
+                        frameSegments = Arrays.copyOf(frameSegments, count * 2);
+                    }
+                    offsets[count] = start + position;
+                    positions[count] = position;
+                    lengths[count] = (int) length;
+                    frameSegments[count] = segments.size();
+                    count++;
+                    position += (int) length;
+                }
+                segments.add(segment);
+                if (next < 0) {
+                    next = start + position;
+                }
+                if (next == start || start + segment.capacity() == size) {
+                    // the remaining bytes are a truncated frame
+                    break;
+                }
+                start = next;
+            }
+
+            this.segments = segments.toArray(new MappedByteBuffer[0]);
+            this.offsets = offsets;
+            this.positions = positions;
+            this.lengths = lengths;
+            this.frameSegments = frameSegments;
+            this.count = count;
+        } catch (IOException | XPCException | RuntimeException e) {
+            this.channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Number of complete frames in the file.
+     */
+    public int size() {
+        return this.count;
+    }
+
+    /**
+     * File offset of the frame at {@code index}.
+     */
+    public long offset(int index) {
+        return this.offsets[checkIndex(index)];
+    }
+
+    public XPCWrapper get(int index) throws XPCException {
+        checkIndex(index);
+        var segment = this.segments[this.frameSegments[index]];
+        return XPCWrapper.from(segment.slice(this.positions[index], this.lengths[index]));
+    }
+
+    /**
+     * Stream of every frame in file order. The stream is sized and splits on frame boundaries,
+     * so {@link Stream#parallel()} decodes frames concurrently. Frames that fail to decode are
+     * reported as {@link XPCUncheckedException}.
+     */
+    public Stream<XPCWrapper> stream() {
+        return StreamSupport.stream(new FrameSpliterator(0, this.count), false);
+    }
+
+    /**
+     * Closes the file. The mappings stay valid until they are garbage collected, but frames must
+     * not be read after the reader is closed.
+     */
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    private MappedByteBuffer map(long start, long length) throws IOException {
+        var segment = this.channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+        segment.order(ByteOrder.LITTLE_ENDIAN);
+        return segment;
+    }
+
+    private static long frameLength(int magic, long length, long offset) throws XPCInvalidValueException {
+        if (magic != XPCWrapper.WRAPPER_MAGIC) {
+            throw new XPCInvalidValueException("Unexpected XPC Wrapper magic value " + magic + " at " + offset);
+        }
+        if (length < 0 || length > Integer.MAX_VALUE - HEADER_LENGTH) {
+            throw new XPCInvalidValueException("Invalid XPC Wrapper length " + length + " at " + offset);
+        }
+        return HEADER_LENGTH + length;
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= this.count) {
+            throw new IndexOutOfBoundsException("Frame " + index + " out of bounds for " + this.count + " frames");
+        }
+        return index;
+    }
+
+    private class FrameSpliterator implements Spliterator<XPCWrapper> {
+        private int index;
+        private final int end;
+
+        FrameSpliterator(int index, int end) {
+            this.index = index;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super XPCWrapper> action) {
+            if (this.index >= this.end) {
+                return false;
+            }
+            action.accept(decode(this.index++));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super XPCWrapper> action) {
+            while (this.index < this.end) {
+                action.accept(decode(this.index++));
+            }
+        }
+
+        @Override
+        public Spliterator<XPCWrapper> trySplit() {
+            var middle = (this.index + this.end) >>> 1;
+            if (middle <= this.index) {
+                return null;
+            }
+            var prefix = new FrameSpliterator(this.index, middle);
+            this.index = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return this.end - this.index;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | IMMUTABLE | NONNULL;
+        }
+
+        private XPCWrapper decode(int index) {
+            try {
+                return get(index);
+            } catch (XPCException e) {
+                throw new XPCUncheckedException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package ca.vijaysharma.apple.xpc;
+
+import ca.vijaysharma.apple.xpc.exceptions.XPCException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Appends {@link XPCWrapper} frames to a capture file that can be read back with
+ * {@link XPCCaptureReader}. Any number of threads may append concurrently: frames are encoded on
+ * the calling thread and handed to a single writer thread, which drains everything that is
+ * queued into one gathering {@link FileChannel} write.
+ *
+ * <p>Durability is group committed. With a force interval the writer calls
+ * {@link FileChannel#force(boolean)} at most once per interval and completes the futures of every
+ * frame the force covered; a zero interval forces after every batch, which still amortizes one
+ * force over all frames queued while the previous one ran. Without an interval frames are left
+ * to the operating system and their futures complete as soon as they are written. In every mode
+ * the returned future completes with the frame's offset in the file.
+ *
+ * <p>If a write or force fails, every queued frame and every later append fails with the same
+ * {@link IOException}, which {@link #close()} rethrows.
+ */
+public class XPCCaptureWriter implements Closeable {
+    private static final int QUEUE_CAPACITY = 16 * 1024;
+    private static final int MAX_BATCH = 1024;
+
+    private record Frame(ByteBuffer bytes, CompletableFuture<Long> future) {}
+
+    private final FileChannel channel;
+    private final long forceIntervalNanos;
+    private final BlockingQueue<Frame> queue = new LinkedBlockingQueue<>();
+    // one permit per free queue slot, so appenders wait for space without holding the lock
+    private final Semaphore space;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Thread writer;
+    private volatile boolean closed = false;
+    private volatile IOException failure = null;
+
+    /**
+     * Opens {@code path} for appending, creating it if needed. Frames are never forced to disk
+     * before {@link #close()}.
+     */
+    public XPCCaptureWriter(Path path) throws IOException {
+        this(path, null);
+    }
+
+    /**
+     * @param forceInterval longest time a written frame waits for a force, or {@code null} to
+     *                      leave flushing to the operating system
+     */
+    public XPCCaptureWriter(Path path, Duration forceInterval) throws IOException {
+        this(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND), forceInterval, QUEUE_CAPACITY);
+    }
+
+    XPCCaptureWriter(FileChannel channel, Duration forceInterval, int capacity) {
+        this.channel = channel;
+        this.space = new Semaphore(capacity);
+        this.forceIntervalNanos = forceInterval == null ? -1 : forceInterval.toNanos();
+        this.writer = new Thread(this::run, "xpc-capture-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    public CompletableFuture<Long> append(long messageId, XPCDictionary payload, XPCWrapper.XPCFlags...flags) throws XPCException {
+        return append(XPCWrapper.bytes(messageId, payload, flags));
+    }
+
+    /**
+     * Appends an already encoded frame. Blocks while the queue of unwritten frames is full.
+     */
+    public CompletableFuture<Long> append(byte[] frame) {
+        var future = new CompletableFuture<Long>();
+        try {
+            while (!this.space.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+                if (rejected(future)) {
+                    return future;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(e);
+            return future;
+        }
+
+        // no append can be between its checks and its enqueue while the write lock is held
+        this.lock.readLock().lock();
+        try {
+            if (rejected(future)) {
+                this.space.release();
+                return future;
+            }
+            this.queue.add(new Frame(ByteBuffer.wrap(frame), future));
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        return future;
+    }
+
+    private boolean rejected(CompletableFuture<Long> future) {
+        if (this.closed) {
+            throw new IllegalStateException("Capture writer is closed");
+        }
+        if (this.failure != null) {
+            future.completeExceptionally(this.failure);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Writes and forces every queued frame, then closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        this.lock.writeLock().lock();
+        try {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+
+        try {
+            this.writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            if (this.failure == null) {
+                this.channel.force(false);
+            }
+        } finally {
+            this.channel.close();
+        }
+        if (this.failure != null) {
+            throw this.failure;
+        }
+    }
+
+    private void run() {
+        var batch = new ArrayList<Frame>(MAX_BATCH);
+        var unforced = new ArrayList<Frame>();
+        var offsets = new ArrayList<Long>();
+        var lastForce = System.nanoTime();
+        try {
+            var position = this.channel.size();
+            while (!this.closed || !this.queue.isEmpty()) {
+                var wait = unforced.isEmpty()
+                    ? TimeUnit.MILLISECONDS.toNanos(100)
+                    : Math.max(0, lastForce + this.forceIntervalNanos - System.nanoTime());
+                var first = this.queue.poll(wait, TimeUnit.NANOSECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    this.queue.drainTo(batch, MAX_BATCH - 1);
+                    this.space.release(batch.size());
+                    position = write(batch, position, offsets);
+                    if (this.forceIntervalNanos < 0) {
+                        complete(batch, offsets);
+                    } else {
+                        unforced.addAll(batch);
+                    }
+                    batch.clear();
+                }
+                if (!unforced.isEmpty() && System.nanoTime() - lastForce >= this.forceIntervalNanos) {
+                    this.channel.force(false);
+                    lastForce = System.nanoTime();
+                    complete(unforced, offsets);
+                }
+            }
+            if (!unforced.isEmpty()) {
+                this.channel.force(false);
+                complete(unforced, offsets);
+            }
+        } catch (IOException e) {
+            fail(e, batch, unforced);
+        } catch (InterruptedException e) {
+            fail(new IOException("Capture writer interrupted", e), batch, unforced);
+        }
+    }
+
+    private long write(List<Frame> batch, long position, List<Long> offsets) throws IOException {
+        var buffers = new ByteBuffer[batch.size()];
+        var total = 0L;
+        for (int index = 0; index < buffers.length; index++) {
+            buffers[index] = batch.get(index).bytes();
+            offsets.add(position + total);
+            total += buffers[index].remaining();
+        }
+        for (var remaining = total; remaining > 0; ) {
+            remaining -= this.channel.write(buffers);
+        }
+        return position + total;
+    }
+
+    /**
+     * Completes {@code frames}, whose offsets are the oldest entries of {@code offsets}.
+     */
+    private static void complete(List<Frame> frames, List<Long> offsets) {
+        for (int index = 0; index < frames.size(); index++) {
+            frames.get(index).future().complete(offsets.get(index));
+        }
+        offsets.subList(0, frames.size()).clear();
+        frames.clear();
+    }
+
+    private void fail(IOException e, List<Frame> batch, List<Frame> unforced) {
+        // appenders never block while holding the read lock, so this can't wait on a full queue
+        this.lock.writeLock().lock();
+        try {
+            this.failure = e;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+        unforced.forEach(frame -> frame.future().completeExceptionally(e));
+        batch.forEach(frame -> frame.future().completeExceptionally(e));
+        Frame frame;
+        while ((frame = this.queue.poll()) != null) {
+            this.space.release();
+            frame.future().completeExceptionally(e);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package ca.vijaysharma.apple.xpc;
+
+import ca.vijaysharma.apple.xpc.exceptions.XPCException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Sends requests over one connection without waiting for earlier replies. Every request gets a
+ * fresh message id and is marked {@link XPCWrapper.XPCFlags#WANTING_REPLY}; the returned future
+ * completes when a {@link XPCWrapper.XPCFlags#REPLY} with the same id arrives, in whatever order
+ * the peer answers. Outstanding requests are tracked in a concurrent table keyed by message id,
+ * so any number of threads can issue requests at once.
+ *
+ * <p>Frames that don't answer an outstanding request are ignored. When the connection fails or
+ * is closed every outstanding request completes exceptionally.
+ */
+public class XPCClient implements Closeable {
+    private static final int READ_BUFFER_LENGTH = 64 * 1024;
+
+    private final SocketChannel channel;
+    private final ExecutorService executor = XPCServer.newThreadPerTaskExecutor();
+    private final AtomicLong messageIds = new AtomicLong(1);
+    private final ConcurrentHashMap<Long, CompletableFuture<XPCWrapper>> inFlight = new ConcurrentHashMap<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile IOException failure = null;
+
+    public XPCClient(SocketAddress address) throws IOException {
+        this(SocketChannel.open(address));
+    }
+
+    /**
+     * Takes ownership of a connected channel, which is closed with the client.
+     */
+    public XPCClient(SocketChannel channel) {
+        this.channel = channel;
+        this.executor.execute(this::read);
+    }
+
+    /**
+     * Sends {@code payload} and returns a future for its reply. The future never times out.
+     */
+    public CompletableFuture<XPCWrapper> request(XPCDictionary payload, XPCWrapper.XPCFlags...flags) throws XPCException {
+        return request(payload, null, flags);
+    }
+
+    /**
+     * Sends {@code payload} and returns a future for its reply, which fails with a
+     * {@link java.util.concurrent.TimeoutException} if no reply arrives within {@code timeout}.
+     * A late reply for a timed out request is ignored.
+     */
+    public CompletableFuture<XPCWrapper> request(XPCDictionary payload, Duration timeout, XPCWrapper.XPCFlags...flags) throws XPCException {
+        var messageId = this.messageIds.getAndIncrement();
+        var frame = XPCWrapper.bytes(messageId, payload, withFlags(flags, XPCWrapper.XPCFlags.WANTING_REPLY));
+
+        var future = new CompletableFuture<XPCWrapper>();
+        this.inFlight.put(messageId, future);
+        future.whenComplete((reply, error) -> this.inFlight.remove(messageId, future));
+        if (timeout != null) {
+            future.orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        }
+
+        try {
+            write(frame);
+        } catch (IOException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Sends {@code payload} without asking for a reply and returns its message id.
+     */
+    public long send(XPCDictionary payload, XPCWrapper.XPCFlags...flags) throws IOException, XPCException {
+        var messageId = this.messageIds.getAndIncrement();
+        write(XPCWrapper.bytes(messageId, payload, withFlags(flags)));
+        return messageId;
+    }
+
+    /**
+     * Number of requests still waiting for a reply.
+     */
+    public int outstanding() {
+        return this.inFlight.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        fail(new ClosedChannelException());
+        this.channel.close();
+        this.executor.shutdown();
+    }
+
+    private void write(byte[] frame) throws IOException {
+        if (this.failure != null) {
+            throw this.failure;
+        }
+        var buffer = ByteBuffer.wrap(frame);
+        this.writeLock.lock();
+        try {
+            while (buffer.hasRemaining()) {
+                this.channel.write(buffer);
+            }
+        } finally {
+            this.writeLock.unlock();
+        }
+    }
+
+    private void read() {
+        var decoder = new XPCFrameDecoder();
+        var buffer = ByteBuffer.allocate(READ_BUFFER_LENGTH);
+        try {
+            while (this.channel.read(buffer) >= 0) {
+                buffer.flip();
+                XPCWrapper frame;
+                while ((frame = decoder.next(buffer)) != null) {
+                    if (!frame.flags.contains(XPCWrapper.XPCFlags.REPLY)) {
+                        continue;
+                    }
+                    var future = this.inFlight.remove(frame.messageId);
+                    if (future != null) {
+                        future.complete(frame);
+                    }
+                }
+                buffer.clear();
+            }
+            fail(new ClosedChannelException());
+        } catch (IOException e) {
+            fail(e);
+        } catch (XPCException | RuntimeException e) {
+            fail(new IOException("Invalid frame received", e));
+        } finally {
+            // nothing reads the connection any more, so don't leave the peer writing to it
+            try {
+                this.channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void fail(IOException e) {
+        if (this.failure == null) {
+            this.failure = e;
+        }
+        for (var messageId : new ArrayList<>(this.inFlight.keySet())) {
+            var future = this.inFlight.remove(messageId);
+            if (future != null) {
+                future.completeExceptionally(this.failure);
+            }
+        }
+    }
+
+    private static XPCWrapper.XPCFlags[] withFlags(XPCWrapper.XPCFlags[] flags, XPCWrapper.XPCFlags...extra) {
+        var all = new ArrayList<>(List.of(flags));
+        all.add(XPCWrapper.XPCFlags.ALWAYS_SET);
+        all.addAll(List.of(extra));
+        return all.toArray(new XPCWrapper.XPCFlags[0]);
+    }
+}
@@ -0,0 +1,39 @@
+package ca.vijaysharma.apple.xpc;
+
+import java.nio.ByteBuffer;
+
+/**
+ * {@code XPC_DATA} value backed by a read-only view of a buffer instead of a {@code byte[]}.
+ * The view covers the buffer's remaining bytes when it is constructed and shares its memory, so
+ * large blobs are neither copied when they are decoded with {@link XPCObject#view(byte[])} nor
+ * when they are wrapped for encoding; the encoder copies them once, straight into the output.
+ * The underlying memory must not be modified while the value is in use.
+ */
+public record XPCDataBuffer(ByteBuffer value) implements XPCObject {
+    public XPCDataBuffer {
+        value = value.slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns an independent read-only view of the data, positioned at its start.
+     */
+    @Override
+    public ByteBuffer value() {
+        return this.value.duplicate();
+    }
+
+    public int length() {
+        return this.value.capacity();
+    }
+
+    public byte[] toByteArray() {
+        var bytes = new byte[length()];
+        this.value.get(0, bytes);
+        return bytes;
+    }
+
+    @Override
+    public XPCType type() {
+        return XPCType.XPC_DATA;
+    }
+}
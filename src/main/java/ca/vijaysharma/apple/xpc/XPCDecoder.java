@@ -0,0 +1,217 @@
+package ca.vijaysharma.apple.xpc;
+
+import ca.vijaysharma.apple.xpc.exceptions.XPCException;
+import ca.vijaysharma.apple.xpc.exceptions.XPCInvalidValueException;
+import ca.vijaysharma.apple.xpc.exceptions.XPCUnimplementedException;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static ca.vijaysharma.apple.xpc.XPCUtilities.roundUp;
+
+class XPCDecoder {
+    private XPCDecoder() {}
+
+    static XPCObject decode(XPCStreamReader reader) throws XPCException {
+        return decode(reader, false);
+    }
+
+    /**
+     * Decodes the next value. When {@code lazy} is set, arrays and dictionaries are returned as
+     * views over their encoded bytes that only decode an entry the first time it is accessed.
+     */
+    static XPCObject decode(XPCStreamReader reader, boolean lazy) throws XPCException {
+        return decode(reader, lazy, false);
+    }
+
+    /**
+     * Like {@link #decode(XPCStreamReader, boolean)}; when {@code views} is set, data is
+     * returned as an {@link XPCDataBuffer} over the source instead of an {@link XPCData} copy.
+     */
+    static XPCObject decode(XPCStreamReader reader, boolean lazy, boolean views) throws XPCException {
+        XPCType type = reader.readType();
+        return decode(type, reader, lazy, views);
+    }
+
+    /**
+     * Decodes the value for {@code type}, whose tag has already been read.
+     */
+    static XPCObject decode(XPCType type, XPCStreamReader reader, boolean lazy) throws XPCException {
+        return decode(type, reader, lazy, false);
+    }
+
+    private static XPCObject decode(XPCType type, XPCStreamReader reader, boolean lazy, boolean views) throws XPCException {
+        return switch (type) {
+            case XPC_NULL -> new XPCNull();
+            case XPC_BOOL -> {
+                var value = reader.readInt32();
+                if (value != 0 && value != 1) {
+                    throw new XPCInvalidValueException("Invalid XPCBool value found " + value + " (" + Integer.toHexString(value) + ")");
+                }
+                yield new XPCBool(value == 1);
+            }
+            case XPC_INT64 -> {
+                var value = reader.readInt64();
+                yield new XPCInt64(value);
+            }
+            case XPC_UINT64 -> {
+                var value = reader.readInt64();
+                if (value < 0) {
+                    throw new XPCInvalidValueException("Read invalid value " + value + " for XPCUInt64");
+                }
+                yield new XPCUInt64(value);
+            }
+            case XPC_DOUBLE -> {
+                var value = reader.readDouble();
+                yield new XPCDouble(value);
+            }
+            case XPC_DATE -> {
+                var nano = reader.readInt64();
+                var instant = Instant.ofEpochMilli(TimeUnit.NANOSECONDS.toMillis(nano));
+                yield new XPCDate(instant);
+            }
+            case XPC_DATA -> {
+                var length = reader.readInt32();
+                if (views) {
+                    yield new XPCDataBuffer(reader.readSlice(roundUp(length, 4)).limit(length));
+                }
+                var data = reader.readBytes(length);
+                yield new XPCData(data);
+            }
+            case XPC_STRING -> {
+                var length = reader.readInt32();
+                var string = reader.readString(length);
+                yield new XPCString(string);
+            }
+            case XPC_UUID -> {
+                var uuid = reader.readUUID();
+                yield new XPCUUID(uuid);
+            }
+            case XPC_ARRAY -> {
+                var length = reader.readInt32();
+                if (lazy) {
+                    yield new XPCArray(new XPCLazyList(reader.readSlice(length), views));
+                }
+                var arrayReader = reader.readStream(length);
+                var count = readCount(arrayReader);
+                var packed = readPacked(arrayReader, count);
+                if (packed != null) {
+                    yield new XPCArray(packed);
+                }
+                var list = new ArrayList<XPCObject>(count);
+                for (int index = 0; index < count; index++) {
+                    var value = decode(arrayReader);
+                    list.add(value);
+                }
+                yield new XPCArray(Collections.unmodifiableList(list));
+            }
+            case XPC_DICTIONARY -> {
+                var length = reader.readInt32();
+                if (lazy) {
+                    yield new XPCDictionary(new XPCLazyMap(reader.readSlice(length), views));
+                }
+                var dictionaryReader = reader.readStream(length);
+                var count = dictionaryReader.readInt32();
+                var map = new HashMap<String, XPCObject>();
+                for (int index = 0; index < count; index++) {
+                    var key = dictionaryReader.readDictionaryKey();
+                    var value = decode(dictionaryReader);
+                    map.put(key, value);
+                }
+                yield new XPCDictionary(map);
+            }
+            case XPC_ERROR -> null;
+            default -> throw new XPCUnimplementedException(type.name());
+        };
+    }
+
+    /**
+     * Reads the remaining {@code count} array elements into an {@link XPCInt64Array},
+     * {@link XPCDoubleArray} or {@link XPCBoolArray} when they all share that type, or returns
+     * {@code null} with the reader back at its starting position when they don't.
+     */
+    private static List<XPCObject> readPacked(XPCStreamReader reader, int count) throws XPCException {
+        if (count == 0) {
+            return null;
+        }
+        var start = reader.position();
+        var type = reader.readInt32();
+        var stride = type == XPCType.XPC_BOOL.value ? 8
+            : type == XPCType.XPC_INT64.value || type == XPCType.XPC_DOUBLE.value ? 12
+            : 0;
+        if (stride == 0 || (long) count * stride != reader.remaining() + 4) {
+            reader.seek(start);
+            return null;
+        }
+
+        if (type == XPCType.XPC_BOOL.value) {
+            var values = new boolean[count];
+            for (int index = 0; index < count; index++) {
+                if (index > 0 && reader.readInt32() != type) {
+                    reader.seek(start);
+                    return null;
+                }
+                var value = reader.readInt32();
+                if (value != 0 && value != 1) {
+                    throw new XPCInvalidValueException("Invalid XPCBool value found " + value + " (" + Integer.toHexString(value) + ")");
+                }
+                values[index] = value == 1;
+            }
+            return new XPCBoolArray(values);
+        }
+
+        if (type == XPCType.XPC_INT64.value) {
+            var values = new long[count];
+            for (int index = 0; index < count; index++) {
+                if (index > 0 && reader.readInt32() != type) {
+                    reader.seek(start);
+                    return null;
+                }
+                values[index] = reader.readInt64();
+            }
+            return new XPCInt64Array(values);
+        }
+
+        var values = new double[count];
+        for (int index = 0; index < count; index++) {
+            if (index > 0 && reader.readInt32() != type) {
+                reader.seek(start);
+                return null;
+            }
+            values[index] = reader.readDouble();
+        }
+        return new XPCDoubleArray(values);
+    }
+
+    /**
+     * Advances the reader past the next value without decoding it.
+     */
+    static void skip(XPCStreamReader reader) throws XPCException {
+        XPCType type = reader.readType();
+        switch (type) {
+            case XPC_NULL, XPC_ERROR -> {}
+            case XPC_BOOL -> reader.skip(4);
+            case XPC_INT64, XPC_UINT64, XPC_DOUBLE, XPC_DATE -> reader.skip(8);
+            case XPC_UUID -> reader.skip(16);
+            case XPC_DATA, XPC_STRING -> reader.skip(roundUp(reader.readInt32(), 4));
+            case XPC_ARRAY, XPC_DICTIONARY -> reader.skip(reader.readInt32());
+            default -> throw new XPCUnimplementedException(type.name());
+        }
+    }
+
+    /**
+     * Reads a container's entry count and checks that it could fit in the remaining bytes,
+     * every entry taking at least one 4 byte type tag.
+     */
+    static int readCount(XPCStreamReader reader) throws XPCInvalidValueException {
+        var count = reader.readInt32();
+        if (count < 0 || count > reader.remaining() / 4) {
+            throw new XPCInvalidValueException("Invalid XPC container count " + count);
+        }
+        return count;
+    }
+}
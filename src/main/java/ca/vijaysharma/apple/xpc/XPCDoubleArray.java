@@ -0,0 +1,27 @@
+package ca.vijaysharma.apple.xpc;
+
+/**
+ * Packed contents for an {@link XPCArray} of doubles, see {@link XPCPackedArray}.
+ */
+public final class XPCDoubleArray extends XPCPackedArray<double[]> {
+    public XPCDoubleArray(double[] value) {
+        super(value, value.length);
+    }
+
+    /**
+     * A copy of the values.
+     */
+    public double[] value() {
+        return this.array.clone();
+    }
+
+    @Override
+    XPCType elementType() {
+        return XPCType.XPC_DOUBLE;
+    }
+
+    @Override
+    XPCObject element(int index) {
+        return new XPCDouble(this.array[index]);
+    }
+}
@@ -0,0 +1,222 @@
+package ca.vijaysharma.apple.xpc;
+
+import ca.vijaysharma.apple.xpc.exceptions.XPCException;
+import ca.vijaysharma.apple.xpc.exceptions.XPCInvalidValueException;
+import ca.vijaysharma.apple.xpc.exceptions.XPCUnimplementedException;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static ca.vijaysharma.apple.xpc.XPCUtilities.putAlignedUtf8;
+import static ca.vijaysharma.apple.xpc.XPCUtilities.roundUp;
+import static ca.vijaysharma.apple.xpc.XPCUtilities.utf8Length;
+
+/**
+ * Encodes an {@link XPCObject} tree in two passes. The first pass ({@link #measure(XPCObject)})
+ * walks the tree once and records the body length of every array and dictionary, in the order
+ * they are visited. The second pass ({@link #write(XPCObject, ByteBuffer)}) visits the tree in
+ * the same order and writes every value exactly once, so no intermediate buffers are needed.
+ */
+class XPCEncoder {
+    private static final ThreadLocal<XPCEncoder> LOCAL = ThreadLocal.withInitial(XPCEncoder::new);
+
+    private int[] sizes = new int[16];
+    private int count;
+    private int cursor;
+
+    /**
+     * Encoder owned by the calling thread, so repeated encodes reuse its length table. A measure
+     * and its write must not be interleaved with another encode on the same thread.
+     */
+    static XPCEncoder local() {
+        return LOCAL.get();
+    }
+
+    static byte[] encode(XPCObject object) throws XPCException {
+        var encoder = local();
+        var buffer = ByteBuffer.allocate(encoder.measure(object)).order(ByteOrder.LITTLE_ENDIAN);
+        encoder.write(object, buffer);
+        return buffer.array();
+    }
+
+    /**
+     * Returns the number of bytes {@code object} encodes to, and remembers the container
+     * lengths for the next call to {@link #write(XPCObject, ByteBuffer)}.
+     */
+    int measure(XPCObject object) throws XPCException {
+        this.count = 0;
+        this.cursor = 0;
+        return sizeOf(object);
+    }
+
+    /**
+     * Writes {@code object} at the buffer's position. The buffer must be little endian and the
+     * object must be the one that was last passed to {@link #measure(XPCObject)}.
+     */
+    void write(XPCObject object, ByteBuffer buffer) {
+        this.cursor = 0;
+        put(object, buffer);
+    }
+
+    private int sizeOf(XPCObject object) throws XPCException {
+        var type = object.type();
+        return switch (type) {
+            case XPC_NULL -> 4;
+            case XPC_BOOL -> 8;
+            case XPC_INT64, XPC_DOUBLE, XPC_DATE -> 12;
+            case XPC_UINT64 -> {
+                var typed = (XPCUInt64)object;
+                if (typed.value() < 0) {
+                    throw new XPCInvalidValueException("XPCUInt64 cannot be negative (" + typed.value() + ")");
+                }
+                yield 12;
+            }
+            case XPC_DATA -> 8 + roundUp(dataLength(object), 4);
+            case XPC_STRING -> 8 + roundUp(utf8Length(((XPCString)object).value()) + 1, 4);
+            case XPC_UUID -> 20;
+            case XPC_ARRAY -> {
+                var values = ((XPCArray)object).value();
+                var packed = packedStride(values);
+                if (packed != 0) {
+                    yield 12 + packed * values.size();
+                }
+                var slot = reserve();
+                var length = 4;
+                for (var item : values) {
+                    length += sizeOf(item);
+                }
+                this.sizes[slot] = length;
+                yield 8 + length;
+            }
+            case XPC_DICTIONARY -> {
+                var slot = reserve();
+                var length = 4;
+                for (var entry : ((XPCDictionary)object).value().entrySet()) {
+                    length += roundUp(utf8Length(entry.getKey()) + 1, 4);
+                    length += sizeOf(entry.getValue());
+                }
+                this.sizes[slot] = length;
+                yield 8 + length;
+            }
+            default -> throw new XPCUnimplementedException(type.name());
+        };
+    }
+
+    private int reserve() {
+        if (this.count == this.sizes.length) {
+            this.sizes = Arrays.copyOf(this.sizes, this.count * 2);
+        }
+        return this.count++;
+    }
+
+    private void put(XPCObject object, ByteBuffer buffer) {
+        var type = object.type();
+        buffer.putInt(type.value);
+        switch (type) {
+            case XPC_NULL -> {}
+            case XPC_BOOL -> buffer.putInt(((XPCBool)object).value() ? 1 : 0);
+            case XPC_INT64 -> buffer.putLong(((XPCInt64)object).value());
+            case XPC_UINT64 -> buffer.putLong(((XPCUInt64)object).value());
+            case XPC_DOUBLE -> {
+                var bits = Double.doubleToRawLongBits(((XPCDouble)object).value());
+                buffer.putLong(Long.reverseBytes(bits));
+            }
+            case XPC_DATE -> {
+                var seconds = ((XPCDate)object).value().getEpochSecond();
+                buffer.putLong(TimeUnit.SECONDS.toNanos(seconds));
+            }
+            case XPC_DATA -> {
+                if (object instanceof XPCDataBuffer view) {
+                    buffer.putInt(view.length());
+                    buffer.put(view.value());
+                    for (int index = view.length(); index < roundUp(view.length(), 4); index++) {
+                        buffer.put((byte) 0x00);
+                    }
+                } else {
+                    var data = ((XPCData)object).value();
+                    buffer.putInt(data.length);
+                    putAligned(buffer, data, data.length);
+                }
+            }
+            case XPC_STRING -> {
+                var string = ((XPCString)object).value();
+                var length = utf8Length(string);
+                buffer.putInt(length + 1);
+                putAlignedUtf8(buffer, string, length);
+            }
+            case XPC_UUID -> {
+                var uuid = ((XPCUUID)object).value();
+                buffer.putLong(Long.reverseBytes(uuid.getMostSignificantBits()));
+                buffer.putLong(Long.reverseBytes(uuid.getLeastSignificantBits()));
+            }
+            case XPC_ARRAY -> {
+                var values = ((XPCArray)object).value();
+                var packed = packedStride(values);
+                if (packed != 0) {
+                    buffer.putInt(4 + packed * values.size());
+                    buffer.putInt(values.size());
+                    putPacked(values, buffer);
+                } else {
+                    buffer.putInt(this.sizes[this.cursor++]);
+                    buffer.putInt(values.size());
+                    for (var item : values) {
+                        put(item, buffer);
+                    }
+                }
+            }
+            case XPC_DICTIONARY -> {
+                var map = ((XPCDictionary)object).value();
+                buffer.putInt(this.sizes[this.cursor++]);
+                buffer.putInt(map.size());
+                for (var entry : map.entrySet()) {
+                    putAlignedUtf8(buffer, entry.getKey(), utf8Length(entry.getKey()));
+                    put(entry.getValue(), buffer);
+                }
+            }
+            default -> throw new IllegalStateException("Unmeasured type " + type.name());
+        }
+    }
+
+    private static int dataLength(XPCObject object) {
+        return object instanceof XPCDataBuffer view ? view.length() : ((XPCData)object).value().length;
+    }
+
+    /**
+     * Encoded size of one element of a packed array, or 0 if {@code values} is not packed.
+     */
+    private static int packedStride(List<XPCObject> values) {
+        if (values instanceof XPCPackedArray<?> packed) {
+            return packed.elementType() == XPCType.XPC_BOOL ? 8 : 12;
+        }
+        return 0;
+    }
+
+    private static void putPacked(List<XPCObject> values, ByteBuffer buffer) {
+        if (values instanceof XPCInt64Array packed) {
+            for (var value : packed.array) {
+                buffer.putInt(XPCType.XPC_INT64.value);
+                buffer.putLong(value);
+            }
+        } else if (values instanceof XPCDoubleArray packed) {
+            for (var value : packed.array) {
+                buffer.putInt(XPCType.XPC_DOUBLE.value);
+                buffer.putLong(Long.reverseBytes(Double.doubleToRawLongBits(value)));
+            }
+        } else if (values instanceof XPCBoolArray packed) {
+            for (var value : packed.array) {
+                buffer.putInt(XPCType.XPC_BOOL.value);
+                buffer.putInt(value ? 1 : 0);
+            }
+        }
+    }
+
+    private static void putAligned(ByteBuffer buffer, byte[] data, int length) {
+        buffer.put(data);
+        for (int index = data.length; index < roundUp(length, 4); index++) {
+            buffer.put((byte) 0x00);
+        }
+    }
+}
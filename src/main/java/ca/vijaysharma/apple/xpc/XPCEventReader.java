@@ -0,0 +1,270 @@
+package ca.vijaysharma.apple.xpc;
+
+import ca.vijaysharma.apple.xpc.exceptions.XPCException;
+import ca.vijaysharma.apple.xpc.exceptions.XPCInvalidValueException;
+import ca.vijaysharma.apple.xpc.exceptions.XPCUnimplementedException;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static ca.vijaysharma.apple.xpc.XPCUtilities.roundUp;
+
+/**
+ * Pull parser over an encoded {@link XPCObject}. Each call to {@link #next()} reads one token
+ * and the value accessors return the data of the current token. Only the bookkeeping for open
+ * containers is kept, so memory use is bounded by the nesting depth rather than the message size.
+ *
+ * <pre>{@code
+ * var reader = new XPCEventReader(bytes);
+ * while (reader.hasNext()) {
+ *     switch (reader.next()) {
+ *         case KEY -> System.out.println(reader.key());
+ *         case STRING -> System.out.println(reader.stringValue());
+ *         default -> {}
+ *     }
+ * }
+ * }</pre>
+ */
+public class XPCEventReader {
+    public enum XPCEvent {
+        START_DICTIONARY,
+        END_DICTIONARY,
+        START_ARRAY,
+        END_ARRAY,
+        KEY,
+        NULL,
+        BOOL,
+        INT64,
+        UINT64,
+        DOUBLE,
+        DATE,
+        DATA,
+        STRING,
+        UUID,
+        ERROR,
+    }
+
+    private final ByteBuffer source;
+    private final XPCStreamReader reader;
+
+    private int[] remaining = new int[8];
+    private int[] ends = new int[8];
+    private boolean[] dictionaries = new boolean[8];
+    private int depth = 0;
+    private boolean started = false;
+    private boolean afterKey = false;
+
+    private XPCEvent event;
+    private String key;
+    private long value;
+    private int offset;
+    private int length;
+
+    public XPCEventReader(byte[] bytes) {
+        this(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Reads the object starting at the buffer's position. The buffer itself is not modified.
+     */
+    public XPCEventReader(ByteBuffer bytes) {
+        this.source = bytes.slice();
+        this.reader = new XPCStreamReader(this.source);
+    }
+
+    public boolean hasNext() {
+        return !this.started || this.depth > 0;
+    }
+
+    public XPCEvent next() throws XPCException {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        this.key = null;
+
+        if (!this.started) {
+            this.started = true;
+            return this.event = readValue();
+        }
+
+        var top = this.depth - 1;
+        if (this.remaining[top] == 0) {
+            var dictionary = this.dictionaries[top];
+            this.depth--;
+            return this.event = dictionary ? XPCEvent.END_DICTIONARY : XPCEvent.END_ARRAY;
+        }
+
+        if (this.dictionaries[top] && !this.afterKey) {
+            this.afterKey = true;
+            this.key = this.reader.readDictionaryKey();
+            return this.event = XPCEvent.KEY;
+        }
+
+        this.afterKey = false;
+        this.remaining[top]--;
+        return this.event = readValue();
+    }
+
+    /**
+     * Skips the rest of the current container or value. After a {@code START_*} event the
+     * next event is the matching {@code END_*}; after a {@code KEY} the entry's value is
+     * skipped and the next event is the following key or the end of the dictionary.
+     */
+    public void skip() throws XPCException {
+        if (this.event == XPCEvent.KEY) {
+            this.afterKey = false;
+            this.remaining[this.depth - 1]--;
+            XPCDecoder.skip(this.reader);
+        } else if (this.event == XPCEvent.START_ARRAY || this.event == XPCEvent.START_DICTIONARY) {
+            var top = this.depth - 1;
+            this.reader.skip(this.ends[top] - this.reader.position());
+            this.remaining[top] = 0;
+            this.afterKey = false;
+        }
+    }
+
+    public XPCEvent event() {
+        return this.event;
+    }
+
+    /**
+     * Number of containers that are currently open.
+     */
+    public int depth() {
+        return this.depth;
+    }
+
+    public String key() {
+        expect(XPCEvent.KEY);
+        return this.key;
+    }
+
+    /**
+     * Number of entries in the container that was just started.
+     */
+    public int count() {
+        expect(XPCEvent.START_ARRAY, XPCEvent.START_DICTIONARY);
+        return this.remaining[this.depth - 1];
+    }
+
+    public boolean boolValue() {
+        expect(XPCEvent.BOOL);
+        return this.value == 1;
+    }
+
+    public long longValue() {
+        expect(XPCEvent.INT64, XPCEvent.UINT64);
+        return this.value;
+    }
+
+    public double doubleValue() {
+        expect(XPCEvent.DOUBLE);
+        return Double.longBitsToDouble(this.value);
+    }
+
+    public Instant dateValue() {
+        expect(XPCEvent.DATE);
+        return Instant.ofEpochMilli(TimeUnit.NANOSECONDS.toMillis(this.value));
+    }
+
+    public UUID uuidValue() {
+        expect(XPCEvent.UUID);
+        return new XPCStreamReader(this.source.slice(this.offset, 16)).readUUID();
+    }
+
+    public byte[] dataValue() {
+        expect(XPCEvent.DATA);
+        return new XPCStreamReader(this.source.slice(this.offset, roundUp(this.length, 4))).readBytes(this.length);
+    }
+
+    /**
+     * Returns the current data as a read-only view of the source, without copying it.
+     */
+    public ByteBuffer dataBuffer() {
+        expect(XPCEvent.DATA);
+        return this.source.slice(this.offset, this.length).asReadOnlyBuffer();
+    }
+
+    public String stringValue() {
+        expect(XPCEvent.STRING);
+        return XPCUtilities.decodeUtf8(this.source, this.offset, Math.max(0, this.length - 1));
+    }
+
+    private XPCEvent readValue() throws XPCException {
+        XPCType type = this.reader.readType();
+        return switch (type) {
+            case XPC_NULL -> XPCEvent.NULL;
+            case XPC_BOOL -> {
+                this.value = this.reader.readInt32();
+                if (this.value != 0 && this.value != 1) {
+                    throw new XPCInvalidValueException("Invalid XPCBool value found " + this.value + " (" + Long.toHexString(this.value) + ")");
+                }
+                yield XPCEvent.BOOL;
+            }
+            case XPC_INT64 -> {
+                this.value = this.reader.readInt64();
+                yield XPCEvent.INT64;
+            }
+            case XPC_UINT64 -> {
+                this.value = this.reader.readInt64();
+                if (this.value < 0) {
+                    throw new XPCInvalidValueException("Read invalid value " + this.value + " for XPCUInt64");
+                }
+                yield XPCEvent.UINT64;
+            }
+            case XPC_DOUBLE -> {
+                this.value = Double.doubleToRawLongBits(this.reader.readDouble());
+                yield XPCEvent.DOUBLE;
+            }
+            case XPC_DATE -> {
+                this.value = this.reader.readInt64();
+                yield XPCEvent.DATE;
+            }
+            case XPC_DATA, XPC_STRING -> {
+                this.length = this.reader.readInt32();
+                this.offset = this.reader.position();
+                this.reader.skip(roundUp(this.length, 4));
+                yield type == XPCType.XPC_DATA ? XPCEvent.DATA : XPCEvent.STRING;
+            }
+            case XPC_UUID -> {
+                this.offset = this.reader.position();
+                this.reader.skip(16);
+                yield XPCEvent.UUID;
+            }
+            case XPC_ARRAY, XPC_DICTIONARY -> {
+                var length = this.reader.readInt32();
+                var end = this.reader.position() + length;
+                var count = XPCDecoder.readCount(this.reader);
+                push(count, end, type == XPCType.XPC_DICTIONARY);
+                yield type == XPCType.XPC_DICTIONARY ? XPCEvent.START_DICTIONARY : XPCEvent.START_ARRAY;
+            }
+            case XPC_ERROR -> XPCEvent.ERROR;
+            default -> throw new XPCUnimplementedException(type.name());
+        };
+    }
+
+    private void push(int count, int end, boolean dictionary) {
+        if (this.depth == this.remaining.length) {
+            this.remaining = Arrays.copyOf(this.remaining, this.depth * 2);
+            this.ends = Arrays.copyOf(this.ends, this.depth * 2);
+            this.dictionaries = Arrays.copyOf(this.dictionaries, this.depth * 2);
+        }
+        this.remaining[this.depth] = count;
+        this.ends[this.depth] = end;
+        this.dictionaries[this.depth] = dictionary;
+        this.depth++;
+    }
+
+    private void expect(XPCEvent...events) {
+        for (var expected : events) {
+            if (this.event == expected) {
+                return;
+            }
+        }
+        throw new IllegalStateException("Current event is " + this.event);
+    }
+}
@@ -0,0 +1,125 @@
+package ca.vijaysharma.apple.xpc;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JDK Flight Recorder events for the codec entry points. Each event is timed from
+ * {@code begin()} to {@code commit()} and callers only fill in fields after
+ * {@code shouldCommit()}, so without a recording, or below the threshold, an event costs no more
+ * than that check. Frame events are on by default for frames slower than 10 ms; the far more
+ * frequent object events are off unless a recording enables them, for example with
+ * {@code ca.vijaysharma.apple.xpc.ObjectDecode#enabled=true}.
+ */
+final class XPCFlightEvents {
+    private XPCFlightEvents() {}
+
+    static void commit(FrameDecode event, long messageId, int flags, long size, boolean lazy) {
+        if (event.shouldCommit()) {
+            event.messageId = messageId;
+            event.flags = flags;
+            event.size = size;
+            event.lazy = lazy;
+            event.commit();
+        }
+    }
+
+    static void commit(FrameEncode event, long messageId, XPCWrapper.XPCFlags[] flags, long size) {
+        if (event.shouldCommit()) {
+            event.messageId = messageId;
+            event.flags = XPCWrapper.XPCFlags.or(flags);
+            event.size = size;
+            event.commit();
+        }
+    }
+
+    static void commit(ObjectDecode event, XPCObject object, long size) {
+        if (event.shouldCommit()) {
+            event.type = object == null ? XPCType.XPC_ERROR.name() : object.type().name();
+            event.size = size;
+            event.commit();
+        }
+    }
+
+    static void commit(ObjectEncode event, XPCObject object, long size) {
+        if (event.shouldCommit()) {
+            event.type = object.type().name();
+            event.size = size;
+            event.commit();
+        }
+    }
+
+    @Name("ca.vijaysharma.apple.xpc.FrameDecode")
+    @Label("XPC Frame Decode")
+    @Category({ "XPC", "Frames" })
+    @Threshold("10 ms")
+    @StackTrace(false)
+    static final class FrameDecode extends Event {
+        @Label("Message Id")
+        long messageId;
+
+        @Label("Flags")
+        @Description("Raw flags of the wrapper header")
+        int flags;
+
+        @Label("Size")
+        @DataAmount
+        long size;
+
+        @Label("Lazy")
+        boolean lazy;
+    }
+
+    @Name("ca.vijaysharma.apple.xpc.FrameEncode")
+    @Label("XPC Frame Encode")
+    @Category({ "XPC", "Frames" })
+    @Threshold("10 ms")
+    @StackTrace(false)
+    static final class FrameEncode extends Event {
+        @Label("Message Id")
+        long messageId;
+
+        @Label("Flags")
+        @Description("Raw flags of the wrapper header")
+        int flags;
+
+        @Label("Size")
+        @DataAmount
+        long size;
+    }
+
+    @Name("ca.vijaysharma.apple.xpc.ObjectDecode")
+    @Label("XPC Object Decode")
+    @Category({ "XPC", "Objects" })
+    @Enabled(false)
+    @StackTrace(false)
+    static final class ObjectDecode extends Event {
+        @Label("Type")
+        String type;
+
+        @Label("Size")
+        @DataAmount
+        long size;
+    }
+
+    @Name("ca.vijaysharma.apple.xpc.ObjectEncode")
+    @Label("XPC Object Encode")
+    @Category({ "XPC", "Objects" })
+    @Enabled(false)
+    @StackTrace(false)
+    static final class ObjectEncode extends Event {
+        @Label("Type")
+        String type;
+
+        @Label("Size")
+        @DataAmount
+        long size;
+    }
+}
@@ -0,0 +1,123 @@
+package ca.vijaysharma.apple.xpc;
+
+import ca.vijaysharma.apple.xpc.exceptions.XPCException;
+import ca.vijaysharma.apple.xpc.exceptions.XPCInvalidValueException;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import static ca.vijaysharma.apple.xpc.XPCWrapper.HEADER_LENGTH;
+
+/**
+ * Incrementally decodes {@link XPCWrapper} frames from a byte stream that arrives in arbitrary
+ * chunks, such as reads from a non-blocking socket. The decoder keeps the partially received
+ * frame between calls; every byte is copied exactly once, into the header or the body of the
+ * frame it belongs to.
+ *
+ * <p>After an {@link XPCException} the stream can no longer be trusted to be aligned on a frame
+ * boundary and the connection should be closed. Instances are not thread safe.
+ */
+public class XPCFrameDecoder {
+    public static final int DEFAULT_MAX_FRAME_LENGTH = 64 * 1024 * 1024;
+
+    private final int maxFrameLength;
+    private final ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+    private ByteBuffer body = null;
+    private int flags;
+    private long messageId;
+
+    public XPCFrameDecoder() {
+        this(DEFAULT_MAX_FRAME_LENGTH);
+    }
+
+    /**
+     * @param maxFrameLength largest payload length accepted before the stream is rejected
+     */
+    public XPCFrameDecoder(int maxFrameLength) {
+        this.maxFrameLength = maxFrameLength;
+    }
+
+    /**
+     * Consumes all of {@code chunk} and returns the frames it completed, in order.
+     */
+    public List<XPCWrapper> decode(ByteBuffer chunk) throws XPCException {
+        var frames = new ArrayList<XPCWrapper>();
+        XPCWrapper frame;
+        while ((frame = next(chunk)) != null) {
+            frames.add(frame);
+        }
+        return frames;
+    }
+
+    /**
+     * Consumes bytes from {@code chunk} until one frame is complete and returns it, or returns
+     * null once {@code chunk} is exhausted without completing a frame. Bytes after the returned
+     * frame are left in {@code chunk}. A payload that can't be decoded, including one that is
+     * cut short by its own length fields, is reported as an {@link XPCInvalidValueException}.
+     */
+    public XPCWrapper next(ByteBuffer chunk) throws XPCException {
+        if (this.body == null) {
+            transfer(chunk, this.header);
+            if (this.header.hasRemaining()) {
+                return null;
+            }
+            if (!readHeader()) {
+                return complete(XPCWrapper.withoutPayload(this.flags, HEADER_LENGTH, false));
+            }
+        }
+
+        transfer(chunk, this.body);
+        if (this.body.hasRemaining()) {
+            return null;
+        }
+        try {
+            return complete(XPCWrapper.from(this.messageId, this.flags, this.body.flip(), false));
+        } catch (RuntimeException e) {
+            // lengths inside the payload that run past its end surface as buffer errors
+            throw new XPCInvalidValueException("Malformed XPC payload in message " + this.messageId, e);
+        }
+    }
+
+    /**
+     * Whether some bytes of a frame have been received but not the whole frame.
+     */
+    public boolean hasPartialFrame() {
+        return this.body != null || this.header.position() > 0;
+    }
+
+    /**
+     * Parses the header and prepares the body buffer; returns false when the frame has no payload.
+     */
+    private boolean readHeader() throws XPCInvalidValueException {
+        var magic = this.header.getInt(0);
+        if (magic != XPCWrapper.WRAPPER_MAGIC) {
+            throw new XPCInvalidValueException("Unexpected XPC Wrapper magic value " + magic);
+        }
+        this.flags = this.header.getInt(4);
+        var length = this.header.getLong(8);
+        this.messageId = this.header.getLong(16);
+        if (length == 0) {
+            return false;
+        }
+        if (length < 0 || length > this.maxFrameLength) {
+            throw new XPCInvalidValueException("Invalid XPC Wrapper length " + length);
+        }
+        this.body = ByteBuffer.allocate((int) length);
+        return true;
+    }
+
+    private XPCWrapper complete(XPCWrapper frame) {
+        this.header.clear();
+        this.body = null;
+        return frame;
+    }
+
+    private static void transfer(ByteBuffer source, ByteBuffer target) {
+        var count = Math.min(source.remaining(), target.remaining());
+        target.put(target.position(), source, source.position(), count);
+        target.position(target.position() + count);
+        source.position(source.position() + count);
+    }
+}
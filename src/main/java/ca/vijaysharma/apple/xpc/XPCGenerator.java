@@ -0,0 +1,399 @@
+package ca.vijaysharma.apple.xpc;
+
+import ca.vijaysharma.apple.xpc.exceptions.XPCException;
+import ca.vijaysharma.apple.xpc.exceptions.XPCInvalidValueException;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static ca.vijaysharma.apple.xpc.XPCUtilities.putAlignedUtf8;
+import static ca.vijaysharma.apple.xpc.XPCUtilities.roundUp;
+import static ca.vijaysharma.apple.xpc.XPCUtilities.utf8Length;
+
+/**
+ * Push style writer that encodes XPC values as they are produced. Container lengths and
+ * counts are filled in when the container is closed.
+ *
+ * <p>Bytes are written to the target once the outermost container (or wrapper) is closed. When
+ * the target is a {@link SeekableByteChannel}, such as a {@link java.nio.channels.FileChannel},
+ * bytes are also written whenever the internal buffer fills up and the length fields of open
+ * containers are patched in place, so arbitrarily large arrays are written in bounded memory.
+ *
+ * <pre>{@code
+ * try (var generator = new XPCGenerator(channel)) {
+ *     generator.startWrapper(1, ALWAYS_SET)
+ *         .startDictionary()
+ *         .key("files").startArray();
+ *     for (var file : files) {
+ *         generator.string(file);
+ *     }
+ *     generator.endArray()
+ *         .endDictionary()
+ *         .endWrapper();
+ * }
+ * }</pre>
+ */
+public class XPCGenerator implements Closeable, Flushable {
+    private static final int FLUSH_THRESHOLD = 64 * 1024;
+    private static final int ARRAY = 0;
+    private static final int DICTIONARY = 1;
+    private static final int WRAPPER = 2;
+
+    private final OutputStream stream;
+    private final WritableByteChannel channel;
+    private final SeekableByteChannel seekable;
+    private ByteBuffer buffer = ByteBuffer.allocate(1024).order(ByteOrder.LITTLE_ENDIAN);
+    private long flushed;
+
+    private long[] starts = new long[8];
+    private int[] counts = new int[8];
+    private int[] kinds = new int[8];
+    private int depth = 0;
+    private boolean afterKey = false;
+
+    public XPCGenerator(OutputStream stream) {
+        this(stream, Channels.newChannel(stream));
+    }
+
+    public XPCGenerator(WritableByteChannel channel) {
+        this(null, channel);
+    }
+
+    private XPCGenerator(OutputStream stream, WritableByteChannel channel) {
+        this.stream = stream;
+        this.channel = channel;
+        this.seekable = channel instanceof SeekableByteChannel ? (SeekableByteChannel) channel : null;
+        try {
+            this.flushed = this.seekable == null ? 0 : this.seekable.position();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read channel position", e);
+        }
+    }
+
+    /**
+     * Starts an {@link XPCWrapper} frame. The frame's payload must be a single dictionary,
+     * followed by {@link #endWrapper()}.
+     */
+    public XPCGenerator startWrapper(long messageId, XPCWrapper.XPCFlags...flags) {
+        if (this.depth != 0) {
+            throw new IllegalStateException("Wrappers cannot be nested");
+        }
+        ensure(32);
+        this.buffer.putInt(XPCWrapper.WRAPPER_MAGIC);
+        this.buffer.putInt(XPCWrapper.XPCFlags.or(flags));
+        push(WRAPPER);
+        this.buffer.putLong(0);
+        this.buffer.putLong(messageId);
+        this.buffer.putInt(XPCWrapper.PAYLOAD_MAGIC);
+        this.buffer.putInt(XPCWrapper.PAYLOAD_PROTOCOL_VERSION);
+        return this;
+    }
+
+    public XPCGenerator endWrapper() throws IOException {
+        pop(WRAPPER);
+        var start = this.starts[this.depth];
+        if (this.counts[this.depth] != 1) {
+            throw new IllegalStateException("Wrapper requires a dictionary payload");
+        }
+        patchInt64(start, position() - start - 16);
+        return flushIfComplete();
+    }
+
+    /**
+     * Writes a wrapper frame without a payload, see {@link XPCWrapper#flagsOnly(XPCWrapper.XPCFlags...)}.
+     */
+    public XPCGenerator flagsOnly(XPCWrapper.XPCFlags...flags) throws IOException {
+        if (this.depth != 0) {
+            throw new IllegalStateException("Wrappers cannot be nested");
+        }
+        ensure(24);
+        this.buffer.putInt(XPCWrapper.WRAPPER_MAGIC);
+        this.buffer.putInt(XPCWrapper.XPCFlags.or(flags));
+        this.buffer.putLong(0);
+        this.buffer.putLong(0);
+        return flushIfComplete();
+    }
+
+    public XPCGenerator startDictionary() {
+        if (this.depth > 0 && this.kinds[this.depth - 1] == WRAPPER && this.counts[this.depth - 1] != 0) {
+            throw new IllegalStateException("Wrapper payload already written");
+        }
+        beforeValue(XPCType.XPC_DICTIONARY, 8);
+        push(DICTIONARY);
+        this.buffer.putInt(0);
+        this.buffer.putInt(0);
+        return this;
+    }
+
+    public XPCGenerator endDictionary() throws IOException {
+        return endContainer(DICTIONARY);
+    }
+
+    public XPCGenerator startArray() {
+        beforeValue(XPCType.XPC_ARRAY, 8);
+        push(ARRAY);
+        this.buffer.putInt(0);
+        this.buffer.putInt(0);
+        return this;
+    }
+
+    public XPCGenerator endArray() throws IOException {
+        return endContainer(ARRAY);
+    }
+
+    public XPCGenerator key(String key) {
+        if (this.depth == 0 || this.kinds[this.depth - 1] != DICTIONARY) {
+            throw new IllegalStateException("Keys can only be written inside a dictionary");
+        }
+        if (this.afterKey) {
+            throw new IllegalStateException("Expected a value for the previous key");
+        }
+        var length = utf8Length(key);
+        ensure(roundUp(length + 1, 4));
+        putAlignedUtf8(this.buffer, key, length);
+        this.afterKey = true;
+        return this;
+    }
+
+    public XPCGenerator nullValue() throws IOException {
+        beforeValue(XPCType.XPC_NULL, 0);
+        return flushIfComplete();
+    }
+
+    public XPCGenerator bool(boolean value) throws IOException {
+        beforeValue(XPCType.XPC_BOOL, 4);
+        this.buffer.putInt(value ? 1 : 0);
+        return flushIfComplete();
+    }
+
+    public XPCGenerator int64(long value) throws IOException {
+        beforeValue(XPCType.XPC_INT64, 8);
+        this.buffer.putLong(value);
+        return flushIfComplete();
+    }
+
+    public XPCGenerator uint64(long value) throws IOException, XPCException {
+        if (value < 0) {
+            throw new XPCInvalidValueException("XPCUInt64 cannot be negative (" + value + ")");
+        }
+        beforeValue(XPCType.XPC_UINT64, 8);
+        this.buffer.putLong(value);
+        return flushIfComplete();
+    }
+
+    public XPCGenerator doubleValue(double value) throws IOException {
+        beforeValue(XPCType.XPC_DOUBLE, 8);
+        this.buffer.putLong(Long.reverseBytes(Double.doubleToRawLongBits(value)));
+        return flushIfComplete();
+    }
+
+    public XPCGenerator date(Instant value) throws IOException {
+        beforeValue(XPCType.XPC_DATE, 8);
+        this.buffer.putLong(TimeUnit.SECONDS.toNanos(value.getEpochSecond()));
+        return flushIfComplete();
+    }
+
+    public XPCGenerator data(byte[] value) throws IOException {
+        beforeValue(XPCType.XPC_DATA, 4 + roundUp(value.length, 4));
+        this.buffer.putInt(value.length);
+        putAligned(value, value.length);
+        return flushIfComplete();
+    }
+
+    /**
+     * Writes the remaining bytes of {@code value} as data, copying them straight into the
+     * output. The buffer's position is not changed.
+     */
+    public XPCGenerator data(ByteBuffer value) throws IOException {
+        var length = value.remaining();
+        beforeValue(XPCType.XPC_DATA, 4 + roundUp(length, 4));
+        this.buffer.putInt(length);
+        this.buffer.put(value.duplicate());
+        for (int index = length; index < roundUp(length, 4); index++) {
+            this.buffer.put((byte) 0x00);
+        }
+        return flushIfComplete();
+    }
+
+    public XPCGenerator string(String value) throws IOException {
+        var length = utf8Length(value);
+        beforeValue(XPCType.XPC_STRING, 4 + roundUp(length + 1, 4));
+        this.buffer.putInt(length + 1);
+        putAlignedUtf8(this.buffer, value, length);
+        return flushIfComplete();
+    }
+
+    public XPCGenerator uuid(UUID value) throws IOException {
+        beforeValue(XPCType.XPC_UUID, 16);
+        this.buffer.putLong(Long.reverseBytes(value.getMostSignificantBits()));
+        this.buffer.putLong(Long.reverseBytes(value.getLeastSignificantBits()));
+        return flushIfComplete();
+    }
+
+    /**
+     * Writes a complete {@link XPCObject} tree as the next value.
+     */
+    public XPCGenerator value(XPCObject value) throws IOException, XPCException {
+        if (value.type() != XPCType.XPC_DICTIONARY
+            && this.depth > 0 && this.kinds[this.depth - 1] == WRAPPER) {
+            throw new IllegalStateException("Wrapper requires a dictionary payload");
+        }
+        var encoder = XPCEncoder.local();
+        var size = encoder.measure(value);
+        beforeValue(null, size);
+        encoder.write(value, this.buffer);
+        return flushIfComplete();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (this.depth == 0 || this.seekable != null) {
+            drain();
+        }
+        if (this.stream != null) {
+            this.stream.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.depth != 0) {
+            throw new IllegalStateException("Closing generator with " + this.depth + " open container(s)");
+        }
+        drain();
+        this.channel.close();
+    }
+
+    private XPCGenerator endContainer(int kind) throws IOException {
+        if (this.afterKey) {
+            throw new IllegalStateException("Expected a value for the previous key");
+        }
+        pop(kind);
+        var start = this.starts[this.depth];
+        patchInt32(start, (int) (position() - start - 4));
+        patchInt32(start + 4, this.counts[this.depth]);
+        return flushIfComplete();
+    }
+
+    /**
+     * Checks that a value may be written here, counts it in the enclosing container and
+     * writes its type tag. {@code type} is null when the value writes its own tag.
+     */
+    private void beforeValue(XPCType type, int length) {
+        if (this.depth > 0) {
+            var top = this.depth - 1;
+            if (this.kinds[top] == DICTIONARY && !this.afterKey) {
+                throw new IllegalStateException("Expected a key before the dictionary value");
+            }
+            if (this.kinds[top] == WRAPPER && type != XPCType.XPC_DICTIONARY && type != null) {
+                throw new IllegalStateException("Wrapper requires a dictionary payload");
+            }
+            this.counts[top]++;
+        }
+        this.afterKey = false;
+        if (type == null) {
+            ensure(length);
+        } else {
+            ensure(4 + length);
+            this.buffer.putInt(type.value);
+        }
+    }
+
+    private void push(int kind) {
+        if (this.depth == this.starts.length) {
+            this.starts = Arrays.copyOf(this.starts, this.depth * 2);
+            this.counts = Arrays.copyOf(this.counts, this.depth * 2);
+            this.kinds = Arrays.copyOf(this.kinds, this.depth * 2);
+        }
+        this.starts[this.depth] = position();
+        this.counts[this.depth] = 0;
+        this.kinds[this.depth] = kind;
+        this.depth++;
+    }
+
+    private void pop(int kind) {
+        if (this.depth == 0 || this.kinds[this.depth - 1] != kind) {
+            throw new IllegalStateException("No open container to close");
+        }
+        this.depth--;
+    }
+
+    private XPCGenerator flushIfComplete() throws IOException {
+        if (this.depth == 0 || (this.seekable != null && this.buffer.position() >= FLUSH_THRESHOLD)) {
+            drain();
+        }
+        return this;
+    }
+
+    private long position() {
+        return this.flushed + this.buffer.position();
+    }
+
+    private void patchInt32(long position, int value) throws IOException {
+        if (position >= this.flushed) {
+            this.buffer.putInt((int) (position - this.flushed), value);
+        } else {
+            patch(position, ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, value));
+        }
+    }
+
+    private void patchInt64(long position, long value) throws IOException {
+        if (position >= this.flushed) {
+            this.buffer.putLong((int) (position - this.flushed), value);
+        } else {
+            patch(position, ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putLong(0, value));
+        }
+    }
+
+    private void patch(long position, ByteBuffer bytes) throws IOException {
+        // Only reachable for seekable channels, the only ones that are drained mid-container
+        var end = this.seekable.position();
+        this.seekable.position(position);
+        while (bytes.hasRemaining()) {
+            this.seekable.write(bytes);
+        }
+        this.seekable.position(end);
+    }
+
+    private void drain() throws IOException {
+        if (this.stream != null) {
+            this.stream.write(this.buffer.array(), 0, this.buffer.position());
+            this.flushed += this.buffer.position();
+            this.buffer.clear();
+            return;
+        }
+        this.buffer.flip();
+        while (this.buffer.hasRemaining()) {
+            this.flushed += this.channel.write(this.buffer);
+        }
+        this.buffer.clear();
+    }
+
+    private void ensure(int length) {
+        if (this.buffer.remaining() < length) {
+            var capacity = Math.max(this.buffer.capacity() * 2, this.buffer.position() + length);
+            var grown = ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+            this.buffer.flip();
+            grown.put(this.buffer);
+            this.buffer = grown;
+        }
+    }
+
+    private void putAligned(byte[] data, int length) {
+        this.buffer.put(data);
+        for (int index = data.length; index < roundUp(length, 4); index++) {
+            this.buffer.put((byte) 0x00);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package ca.vijaysharma.apple.xpc;
+
+/**
+ * Packed contents for an {@link XPCArray} of integers, see {@link XPCPackedArray}.
+ */
+public final class XPCInt64Array extends XPCPackedArray<long[]> {
+    public XPCInt64Array(long[] value) {
+        super(value, value.length);
+    }
+
+    /**
+     * A copy of the values.
+     */
+    public long[] value() {
+        return this.array.clone();
+    }
+
+    @Override
+    XPCType elementType() {
+        return XPCType.XPC_INT64;
+    }
+
+    @Override
+    XPCObject element(int index) {
+        return new XPCInt64(this.array[index]);
+    }
+}
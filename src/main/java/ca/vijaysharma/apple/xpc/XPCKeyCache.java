@@ -0,0 +1,87 @@
+package ca.vijaysharma.apple.xpc;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Bounded cache of decoded dictionary keys, looked up by their encoded bytes, so a key that
+ * has been seen before is returned as the same {@link String} instance without allocating or
+ * decoding it again.
+ *
+ * <p>The table is direct mapped: each key hashes to one slot and a colliding key replaces the
+ * previous one. Entries are immutable and only ever replaced whole, so concurrent readers
+ * always see either a complete entry or none and no locking is needed; a lost update only
+ * costs a decode.
+ */
+final class XPCKeyCache {
+    static final XPCKeyCache SHARED = new XPCKeyCache(4096, 128);
+
+    private record Entry(byte[] bytes, String key) {}
+
+    private final Entry[] table;
+    private final int mask;
+    private final int maxKeyLength;
+
+    /**
+     * @param slots        number of table slots, rounded up to a power of two
+     * @param maxKeyLength keys longer than this many bytes are decoded but never cached
+     */
+    XPCKeyCache(int slots, int maxKeyLength) {
+        var size = Integer.highestOneBit(Math.max(1, slots - 1)) << 1;
+        this.table = new Entry[size];
+        this.mask = size - 1;
+        this.maxKeyLength = maxKeyLength;
+    }
+
+    /**
+     * Returns the key encoded in the {@code length} bytes at {@code offset}, without the NUL
+     * terminator. The buffer's position is not changed.
+     */
+    String lookup(ByteBuffer buffer, int offset, int length) {
+        if (length > this.maxKeyLength) {
+            return XPCUtilities.decodeUtf8(buffer, offset, length);
+        }
+
+        var hash = hash(buffer, offset, length);
+        var slot = (hash ^ (hash >>> 16)) & this.mask;
+        var entry = this.table[slot];
+        if (entry != null && matches(entry.bytes, buffer, offset, length)) {
+            return entry.key;
+        }
+
+        var bytes = new byte[length];
+        buffer.get(offset, bytes);
+        var key = new String(bytes, UTF_8);
+        this.table[slot] = new Entry(bytes, key);
+        return key;
+    }
+
+    private static int hash(ByteBuffer buffer, int offset, int length) {
+        var hash = length;
+        if (buffer.hasArray()) {
+            var array = buffer.array();
+            var start = buffer.arrayOffset() + offset;
+            for (int index = start; index < start + length; index++) {
+                hash = 31 * hash + array[index];
+            }
+        } else {
+            for (int index = offset; index < offset + length; index++) {
+                hash = 31 * hash + buffer.get(index);
+            }
+        }
+        return hash;
+    }
+
+    private static boolean matches(byte[] bytes, ByteBuffer buffer, int offset, int length) {
+        if (bytes.length != length) {
+            return false;
+        }
+        if (buffer.hasArray()) {
+            var start = buffer.arrayOffset() + offset;
+            return Arrays.equals(bytes, 0, length, buffer.array(), start, start + length);
+        }
+        return buffer.slice(offset, length).equals(ByteBuffer.wrap(bytes));
+    }
+}
@@ -0,0 +1,47 @@
+package ca.vijaysharma.apple.xpc;
+
+import ca.vijaysharma.apple.xpc.exceptions.XPCException;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * Read-only list over the encoded body of an XPC array. Element offsets are recorded up front;
+ * an element is decoded the first time it is accessed and cached afterwards. Decoded values are
+ * immutable, so concurrent readers can at worst decode the same element twice.
+ */
+class XPCLazyList extends AbstractList<XPCObject> implements RandomAccess {
+    private final ByteBuffer body;
+    private final boolean views;
+    private final int[] offsets;
+    private final XPCObject[] values;
+
+    XPCLazyList(ByteBuffer body, boolean views) throws XPCException {
+        this.body = body;
+        this.views = views;
+        var reader = new XPCStreamReader(body);
+        var count = XPCDecoder.readCount(reader);
+        this.offsets = new int[count];
+        this.values = new XPCObject[count];
+        for (int index = 0; index < count; index++) {
+            this.offsets[index] = reader.position();
+            XPCDecoder.skip(reader);
+        }
+    }
+
+    @Override
+    public XPCObject get(int index) {
+        var value = this.values[index];
+        if (value == null) {
+            value = XPCLazyMap.decodeAt(this.body, this.offsets[index], this.views);
+            this.values[index] = value;
+        }
+        return value;
+    }
+
+    @Override
+    public int size() {
+        return this.offsets.length;
+    }
+}
@@ -0,0 +1,126 @@
+package ca.vijaysharma.apple.xpc;
+
+import ca.vijaysharma.apple.xpc.exceptions.XPCException;
+import ca.vijaysharma.apple.xpc.exceptions.XPCUncheckedException;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Read-only map over the encoded body of an XPC dictionary. Keys and value offsets are
+ * indexed up front; a value is decoded the first time it is accessed and cached afterwards.
+ * Decoded values are immutable, so concurrent readers can at worst decode the same value twice.
+ */
+class XPCLazyMap extends AbstractMap<String, XPCObject> {
+    private final ByteBuffer body;
+    private final boolean views;
+    private final HashMap<String, Integer> index;
+    private final String[] keys;
+    private final int[] offsets;
+    private final XPCObject[] values;
+
+    XPCLazyMap(ByteBuffer body, boolean views) throws XPCException {
+        this.body = body;
+        this.views = views;
+        var reader = new XPCStreamReader(body);
+        var count = XPCDecoder.readCount(reader);
+        this.index = new HashMap<>();
+        var keys = new String[count];
+        var offsets = new int[count];
+        var size = 0;
+        for (int entry = 0; entry < count; entry++) {
+            var key = reader.readDictionaryKey();
+            var offset = reader.position();
+            XPCDecoder.skip(reader);
+
+            // Later duplicates win, as they do when decoding into a HashMap
+            var existing = this.index.putIfAbsent(key, size);
+            if (existing != null) {
+                offsets[existing] = offset;
+            } else {
+                keys[size] = key;
+                offsets[size] = offset;
+                size++;
+            }
+        }
+        this.keys = keys;
+        this.offsets = offsets;
+        this.values = new XPCObject[size];
+    }
+
+    @Override
+    public XPCObject get(Object key) {
+        var slot = this.index.get(key);
+        return slot == null ? null : valueAt(slot);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return this.index.containsKey(key);
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return Collections.unmodifiableSet(this.index.keySet());
+    }
+
+    @Override
+    public int size() {
+        return this.values.length;
+    }
+
+    @Override
+    public Set<Entry<String, XPCObject>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, XPCObject>> iterator() {
+                return new Iterator<>() {
+                    private int slot = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return this.slot < size();
+                    }
+
+                    @Override
+                    public Entry<String, XPCObject> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        var current = this.slot++;
+                        return new SimpleImmutableEntry<>(keys[current], valueAt(current));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return XPCLazyMap.this.size();
+            }
+        };
+    }
+
+    private XPCObject valueAt(int slot) {
+        var value = this.values[slot];
+        if (value == null) {
+            value = decodeAt(this.body, this.offsets[slot], this.views);
+            this.values[slot] = value;
+        }
+        return value;
+    }
+
+    static XPCObject decodeAt(ByteBuffer body, int offset, boolean views) {
+        try {
+            var reader = new XPCStreamReader(body.slice(offset, body.limit() - offset));
+            return XPCDecoder.decode(reader, true, views);
+        } catch (XPCException e) {
+            throw new XPCUncheckedException(e);
+        }
+    }
+}
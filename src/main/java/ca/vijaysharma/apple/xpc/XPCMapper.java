@@ -0,0 +1,544 @@
+package ca.vijaysharma.apple.xpc;
+
+import ca.vijaysharma.apple.xpc.exceptions.XPCException;
+import ca.vijaysharma.apple.xpc.exceptions.XPCInvalidTypeException;
+import ca.vijaysharma.apple.xpc.exceptions.XPCInvalidValueException;
+import ca.vijaysharma.apple.xpc.exceptions.XPCUncheckedException;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Binds Java records directly to the XPC wire format, without building an intermediate
+ * {@link XPCObject} tree. A record encodes as a dictionary keyed by its component names.
+ *
+ * <p>Supported component types are the primitives and their boxes (integers as
+ * {@code XPC_INT64}, {@code float} and {@code double} as {@code XPC_DOUBLE}), {@link String},
+ * {@code byte[]}, {@link UUID}, {@link Instant}, enums (by name), nested records,
+ * {@link List} and {@link Map} with {@link String} keys of any supported type, and
+ * {@link XPCObject} values, which are passed through as is. Null references encode as
+ * {@code XPC_NULL}.
+ *
+ * <p>The codec for each record class is built once, from method handles on its accessors and
+ * canonical constructor, and cached. Primitive components are written without boxing.
+ *
+ * <pre>{@code
+ * record Status(String name, long uptime, List<String> services) {}
+ *
+ * byte[] bytes = XPCMapper.write(new Status("device", 42, List.of("sshd")));
+ * Status status = XPCMapper.read(bytes, Status.class);
+ * }</pre>
+ */
+public final class XPCMapper {
+    private static final ClassValue<RecordCodec> RECORDS = new ClassValue<>() {
+        @Override
+        protected RecordCodec computeValue(Class<?> type) {
+            try {
+                return new RecordCodec(type);
+            } catch (XPCException e) {
+                throw new XPCUncheckedException(e);
+            }
+        }
+    };
+
+    private XPCMapper() {}
+
+    public static byte[] write(Record value) throws XPCException {
+        var writer = new XPCStreamWriter();
+        write(value, writer);
+        return writer.toByteArray();
+    }
+
+    /**
+     * Appends the encoding of {@code value} to {@code writer}, for example a pooled one.
+     */
+    public static void write(Record value, XPCStreamWriter writer) throws XPCException {
+        codec(value.getClass()).write(value, writer);
+    }
+
+    public static <T extends Record> T read(byte[] bytes, Class<T> type) throws XPCException {
+        return read(ByteBuffer.wrap(bytes), type);
+    }
+
+    /**
+     * Reads a record starting at the buffer's position and advances the position past it.
+     */
+    public static <T extends Record> T read(ByteBuffer bytes, Class<T> type) throws XPCException {
+        var reader = new XPCStreamReader(bytes);
+        var value = codec(type).read(reader.readType(), reader);
+        bytes.position(bytes.position() + reader.position());
+        return type.cast(value);
+    }
+
+    private static RecordCodec codec(Class<?> type) throws XPCException {
+        try {
+            return RECORDS.get(type);
+        } catch (XPCUncheckedException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Writes and reads one complete value, including its type tag. Values passed to
+     * {@link #write(Object, XPCStreamWriter)} are never null.
+     */
+    private interface Codec {
+        void write(Object value, XPCStreamWriter writer) throws XPCException;
+
+        Object read(XPCType type, XPCStreamReader reader) throws XPCException;
+    }
+
+    private static void writeNullable(Codec codec, Object value, XPCStreamWriter writer) throws XPCException {
+        if (value == null) {
+            writer.write(XPCType.XPC_NULL);
+        } else {
+            codec.write(value, writer);
+        }
+    }
+
+    private static Object readNullable(Codec codec, XPCStreamReader reader) throws XPCException {
+        var type = reader.readType();
+        return type == XPCType.XPC_NULL ? null : codec.read(type, reader);
+    }
+
+    private static void expect(XPCType expected, XPCType actual) throws XPCInvalidTypeException {
+        if (expected != actual) {
+            throw new XPCInvalidTypeException("Expected " + expected.name() + " but found " + actual.name());
+        }
+    }
+
+    private static Codec codecFor(Type type) throws XPCException {
+        if (type instanceof ParameterizedType parameterized) {
+            var raw = (Class<?>) parameterized.getRawType();
+            var arguments = parameterized.getActualTypeArguments();
+            if (raw == List.class || raw == Collection.class) {
+                return new ListCodec(codecFor(arguments[0]));
+            }
+            if (raw == Map.class && arguments[0] == String.class) {
+                return new MapCodec(codecFor(arguments[1]));
+            }
+            throw new XPCInvalidTypeException("Unsupported type for XPCMapper " + type.getTypeName());
+        }
+        if (!(type instanceof Class<?> c)) {
+            throw new XPCInvalidTypeException("Unsupported type for XPCMapper " + type.getTypeName());
+        }
+
+        if (c == boolean.class || c == Boolean.class) {
+            return BOOL;
+        } else if (c == long.class || c == Long.class) {
+            return new IntegerCodec(Long.MIN_VALUE, Long.MAX_VALUE, value -> value);
+        } else if (c == int.class || c == Integer.class) {
+            return new IntegerCodec(Integer.MIN_VALUE, Integer.MAX_VALUE, value -> (int) value);
+        } else if (c == short.class || c == Short.class) {
+            return new IntegerCodec(Short.MIN_VALUE, Short.MAX_VALUE, value -> (short) value);
+        } else if (c == byte.class || c == Byte.class) {
+            return new IntegerCodec(Byte.MIN_VALUE, Byte.MAX_VALUE, value -> (byte) value);
+        } else if (c == double.class || c == Double.class) {
+            return DOUBLE;
+        } else if (c == float.class || c == Float.class) {
+            return FLOAT;
+        } else if (c == String.class) {
+            return STRING;
+        } else if (c == byte[].class) {
+            return DATA;
+        } else if (c == UUID.class) {
+            return UUID_CODEC;
+        } else if (c == Instant.class) {
+            return DATE;
+        } else if (c.isEnum()) {
+            return new EnumCodec(c);
+        } else if (c.isRecord()) {
+            // Looked up on use, so records can refer to themselves
+            return new Codec() {
+                @Override
+                public void write(Object value, XPCStreamWriter writer) throws XPCException {
+                    codec(c).write(value, writer);
+                }
+
+                @Override
+                public Object read(XPCType type, XPCStreamReader reader) throws XPCException {
+                    return codec(c).read(type, reader);
+                }
+            };
+        } else if (XPCObject.class.isAssignableFrom(c)) {
+            return new ObjectCodec(c);
+        }
+        throw new XPCInvalidTypeException("Unsupported type for XPCMapper " + c.getName());
+    }
+
+    private static final Codec BOOL = new Codec() {
+        @Override
+        public void write(Object value, XPCStreamWriter writer) {
+            writer.write(XPCType.XPC_BOOL);
+            writer.writeInt32((Boolean) value ? 1 : 0);
+        }
+
+        @Override
+        public Object read(XPCType type, XPCStreamReader reader) throws XPCException {
+            expect(XPCType.XPC_BOOL, type);
+            var value = reader.readInt32();
+            if (value != 0 && value != 1) {
+                throw new XPCInvalidValueException("Invalid XPCBool value found " + value + " (" + Integer.toHexString(value) + ")");
+            }
+            return value == 1;
+        }
+    };
+
+    private static final Codec DOUBLE = new Codec() {
+        @Override
+        public void write(Object value, XPCStreamWriter writer) {
+            writer.write(XPCType.XPC_DOUBLE);
+            writer.writeDouble(((Number) value).doubleValue());
+        }
+
+        @Override
+        public Object read(XPCType type, XPCStreamReader reader) throws XPCException {
+            expect(XPCType.XPC_DOUBLE, type);
+            return reader.readDouble();
+        }
+    };
+
+    private static final Codec FLOAT = new Codec() {
+        @Override
+        public void write(Object value, XPCStreamWriter writer) throws XPCException {
+            DOUBLE.write(value, writer);
+        }
+
+        @Override
+        public Object read(XPCType type, XPCStreamReader reader) throws XPCException {
+            return (float) (double) DOUBLE.read(type, reader);
+        }
+    };
+
+    private static final Codec STRING = new Codec() {
+        @Override
+        public void write(Object value, XPCStreamWriter writer) {
+            var string = (String) value;
+            writer.write(XPCType.XPC_STRING);
+            var length = XPCUtilities.utf8Length(string);
+            writer.writeInt32(length + 1);
+            writer.writeAlignedString(string, length);
+        }
+
+        @Override
+        public Object read(XPCType type, XPCStreamReader reader) throws XPCException {
+            expect(XPCType.XPC_STRING, type);
+            return reader.readString(reader.readInt32());
+        }
+    };
+
+    private static final Codec DATA = new Codec() {
+        @Override
+        public void write(Object value, XPCStreamWriter writer) {
+            var bytes = (byte[]) value;
+            writer.write(XPCType.XPC_DATA);
+            writer.writeInt32(bytes.length);
+            writer.writeAligned(bytes, bytes.length);
+        }
+
+        @Override
+        public Object read(XPCType type, XPCStreamReader reader) throws XPCException {
+            expect(XPCType.XPC_DATA, type);
+            return reader.readBytes(reader.readInt32());
+        }
+    };
+
+    private static final Codec UUID_CODEC = new Codec() {
+        @Override
+        public void write(Object value, XPCStreamWriter writer) {
+            var uuid = (UUID) value;
+            writer.write(XPCType.XPC_UUID);
+            writer.writeInt64(Long.reverseBytes(uuid.getMostSignificantBits()));
+            writer.writeInt64(Long.reverseBytes(uuid.getLeastSignificantBits()));
+        }
+
+        @Override
+        public Object read(XPCType type, XPCStreamReader reader) throws XPCException {
+            expect(XPCType.XPC_UUID, type);
+            return reader.readUUID();
+        }
+    };
+
+    private static final Codec DATE = new Codec() {
+        @Override
+        public void write(Object value, XPCStreamWriter writer) {
+            writer.write(XPCType.XPC_DATE);
+            writer.writeInt64(TimeUnit.SECONDS.toNanos(((Instant) value).getEpochSecond()));
+        }
+
+        @Override
+        public Object read(XPCType type, XPCStreamReader reader) throws XPCException {
+            expect(XPCType.XPC_DATE, type);
+            return Instant.ofEpochMilli(TimeUnit.NANOSECONDS.toMillis(reader.readInt64()));
+        }
+    };
+
+    private interface Narrowing {
+        Object box(long value);
+    }
+
+    private record IntegerCodec(long min, long max, Narrowing narrowing) implements Codec {
+        @Override
+        public void write(Object value, XPCStreamWriter writer) {
+            writer.write(XPCType.XPC_INT64);
+            writer.writeInt64(((Number) value).longValue());
+        }
+
+        @Override
+        public Object read(XPCType type, XPCStreamReader reader) throws XPCException {
+            if (type != XPCType.XPC_UINT64) {
+                expect(XPCType.XPC_INT64, type);
+            }
+            var value = reader.readInt64();
+            if (value < this.min || value > this.max) {
+                throw new XPCInvalidValueException("Value " + value + " out of range [" + this.min + ", " + this.max + "]");
+            }
+            return this.narrowing.box(value);
+        }
+    }
+
+    private record EnumCodec(Class<?> type) implements Codec {
+        @Override
+        public void write(Object value, XPCStreamWriter writer) throws XPCException {
+            STRING.write(((Enum<?>) value).name(), writer);
+        }
+
+        @Override
+        public Object read(XPCType type, XPCStreamReader reader) throws XPCException {
+            var name = (String) STRING.read(type, reader);
+            for (var constant : this.type.getEnumConstants()) {
+                if (((Enum<?>) constant).name().equals(name)) {
+                    return constant;
+                }
+            }
+            throw new XPCInvalidValueException("Unknown " + this.type.getSimpleName() + " constant " + name);
+        }
+    }
+
+    private record ObjectCodec(Class<?> type) implements Codec {
+        @Override
+        public void write(Object value, XPCStreamWriter writer) throws XPCException {
+            writer.writeObject((XPCObject) value);
+        }
+
+        @Override
+        public Object read(XPCType type, XPCStreamReader reader) throws XPCException {
+            var value = XPCDecoder.decode(type, reader, false);
+            if (value != null && !this.type.isInstance(value)) {
+                throw new XPCInvalidTypeException("Expected " + this.type.getSimpleName() + " but found " + type.name());
+            }
+            return value;
+        }
+    }
+
+    private record ListCodec(Codec element) implements Codec {
+        @Override
+        public void write(Object value, XPCStreamWriter writer) throws XPCException {
+            var items = (Collection<?>) value;
+            writer.write(XPCType.XPC_ARRAY);
+            var length = writer.reserveInt32();
+            writer.writeInt32(items.size());
+            for (var item : items) {
+                writeNullable(this.element, item, writer);
+            }
+            writer.patchInt32(length, writer.size() - length - 4);
+        }
+
+        @Override
+        public Object read(XPCType type, XPCStreamReader reader) throws XPCException {
+            expect(XPCType.XPC_ARRAY, type);
+            var body = reader.readStream(reader.readInt32());
+            var count = XPCDecoder.readCount(body);
+            var items = new ArrayList<>(count);
+            for (int index = 0; index < count; index++) {
+                items.add(readNullable(this.element, body));
+            }
+            return items;
+        }
+    }
+
+    private record MapCodec(Codec value) implements Codec {
+        @Override
+        public void write(Object value, XPCStreamWriter writer) throws XPCException {
+            var map = (Map<?, ?>) value;
+            writer.write(XPCType.XPC_DICTIONARY);
+            var length = writer.reserveInt32();
+            writer.writeInt32(map.size());
+            for (var entry : map.entrySet()) {
+                var key = (String) entry.getKey();
+                writer.writeAlignedString(key, XPCUtilities.utf8Length(key));
+                writeNullable(this.value, entry.getValue(), writer);
+            }
+            writer.patchInt32(length, writer.size() - length - 4);
+        }
+
+        @Override
+        public Object read(XPCType type, XPCStreamReader reader) throws XPCException {
+            expect(XPCType.XPC_DICTIONARY, type);
+            var body = reader.readStream(reader.readInt32());
+            var count = XPCDecoder.readCount(body);
+            var map = new LinkedHashMap<String, Object>();
+            for (int index = 0; index < count; index++) {
+                var key = body.readDictionaryKey();
+                map.put(key, readNullable(this.value, body));
+            }
+            return map;
+        }
+    }
+
+    /**
+     * Writes one record component, including its type tag.
+     */
+    private interface Component {
+        void write(Object record, XPCStreamWriter writer) throws Throwable;
+    }
+
+    private static final class RecordCodec implements Codec {
+        private final Class<?> type;
+        private final byte[][] keys;
+        private final Component[] components;
+        private final Codec[] codecs;
+        private final boolean[] primitives;
+        private final Object[] defaults;
+        private final Map<String, Integer> index = new HashMap<>();
+        private final MethodHandle constructor;
+
+        RecordCodec(Class<?> type) throws XPCException {
+            if (!type.isRecord()) {
+                throw new XPCInvalidTypeException(type.getName() + " is not a record");
+            }
+            this.type = type;
+            var recordComponents = type.getRecordComponents();
+            var count = recordComponents.length;
+            this.keys = new byte[count][];
+            this.components = new Component[count];
+            this.codecs = new Codec[count];
+            this.primitives = new boolean[count];
+            this.defaults = new Object[count];
+
+            var lookup = MethodHandles.lookup();
+            var parameters = new Class<?>[count];
+            try {
+                for (int index = 0; index < count; index++) {
+                    var component = recordComponents[index];
+                    var accessor = component.getAccessor();
+                    accessor.setAccessible(true);
+
+                    this.keys[index] = component.getName().getBytes(UTF_8);
+                    this.index.put(component.getName(), index);
+                    this.codecs[index] = codecFor(component.getGenericType());
+                    this.components[index] = component(component, lookup.unreflect(accessor), this.codecs[index]);
+                    this.primitives[index] = component.getType().isPrimitive();
+                    this.defaults[index] = defaultValue(component.getType());
+                    parameters[index] = component.getType();
+                }
+                var canonical = type.getDeclaredConstructor(parameters);
+                canonical.setAccessible(true);
+                this.constructor = lookup.unreflectConstructor(canonical)
+                    .asSpreader(Object[].class, count)
+                    .asType(MethodType.methodType(Object.class, Object[].class));
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                throw new XPCInvalidTypeException("Unable to bind record " + type.getName(), e);
+            }
+        }
+
+        @Override
+        public void write(Object value, XPCStreamWriter writer) throws XPCException {
+            writer.write(XPCType.XPC_DICTIONARY);
+            var length = writer.reserveInt32();
+            writer.writeInt32(this.components.length);
+            for (int index = 0; index < this.components.length; index++) {
+                writer.writeAligned(this.keys[index], this.keys[index].length + 1);
+                try {
+                    this.components[index].write(value, writer);
+                } catch (XPCException | RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            writer.patchInt32(length, writer.size() - length - 4);
+        }
+
+        @Override
+        public Object read(XPCType type, XPCStreamReader reader) throws XPCException {
+            expect(XPCType.XPC_DICTIONARY, type);
+            var body = reader.readStream(reader.readInt32());
+            var count = XPCDecoder.readCount(body);
+            var arguments = this.defaults.clone();
+            for (int entry = 0; entry < count; entry++) {
+                var key = body.readDictionaryKey();
+                var index = this.index.get(key);
+                if (index == null) {
+                    XPCDecoder.skip(body);
+                    continue;
+                }
+                var value = readNullable(this.codecs[index], body);
+                if (value == null && this.primitives[index]) {
+                    throw new XPCInvalidValueException("Null value for primitive component " + key + " of " + this.type.getSimpleName());
+                }
+                arguments[index] = value;
+            }
+
+            try {
+                return (Object) this.constructor.invokeExact(arguments);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private static Component component(RecordComponent component, MethodHandle accessor, Codec codec) {
+            var type = component.getType();
+            if (type == long.class || type == int.class || type == short.class || type == byte.class) {
+                var getter = accessor.asType(MethodType.methodType(long.class, Object.class));
+                return (record, writer) -> {
+                    writer.write(XPCType.XPC_INT64);
+                    writer.writeInt64((long) getter.invokeExact(record));
+                };
+            } else if (type == double.class || type == float.class) {
+                var getter = accessor.asType(MethodType.methodType(double.class, Object.class));
+                return (record, writer) -> {
+                    writer.write(XPCType.XPC_DOUBLE);
+                    writer.writeDouble((double) getter.invokeExact(record));
+                };
+            } else if (type == boolean.class) {
+                var getter = accessor.asType(MethodType.methodType(boolean.class, Object.class));
+                return (record, writer) -> {
+                    writer.write(XPCType.XPC_BOOL);
+                    writer.writeInt32((boolean) getter.invokeExact(record) ? 1 : 0);
+                };
+            }
+            var getter = accessor.asType(MethodType.methodType(Object.class, Object.class));
+            return (record, writer) -> writeNullable(codec, (Object) getter.invokeExact(record), writer);
+        }
+
+        private static Object defaultValue(Class<?> type) {
+            if (type == boolean.class) return false;
+            if (type == long.class) return 0L;
+            if (type == int.class) return 0;
+            if (type == short.class) return (short) 0;
+            if (type == byte.class) return (byte) 0;
+            if (type == double.class) return 0.0;
+            if (type == float.class) return 0.0f;
+            return null;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package ca.vijaysharma.apple.xpc;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects codec counters and histograms from {@link XPCMetricsListener} callbacks and exposes
+ * them over JMX. Metrics are off by default: the codec only checks a single volatile field until
+ * a listener is installed.
+ *
+ * <p>Operation, byte and latency counts are exact. Type counts and nesting depths need a walk
+ * over the whole value, so they are only collected for a random sample of operations and
+ * scaled up by the sample rate; a rate of 1 walks every value.
+ *
+ * <pre>{@code
+ * var metrics = new XPCMetrics();
+ * XPCMetrics.setListener(metrics);
+ * metrics.register();
+ * }</pre>
+ */
+public class XPCMetrics implements XPCMetricsListener, XPCMetricsMXBean {
+    public static final String OBJECT_NAME = "ca.vijaysharma.apple.xpc:type=XPCMetrics";
+
+    private static final int POWER_OF_TWO_BUCKETS = 65;
+    private static final int DEPTH_BUCKETS = 33;
+    private static final int DEFAULT_SHAPE_SAMPLE_RATE = 16;
+
+    private static volatile XPCMetricsListener listener = null;
+
+    private final int shapeSampleRate;
+
+    private final LongAdder[] operations = adders(Operation.values().length);
+    private final LongAdder[] operationBytes = adders(Operation.values().length);
+    private final LongAdder[] types = adders(XPCType.values().length);
+    private final LongAdder[] sizes = adders(POWER_OF_TWO_BUCKETS);
+    private final LongAdder[] depths = adders(DEPTH_BUCKETS);
+    private final LongAdder[] decodeLatencies = adders(POWER_OF_TWO_BUCKETS);
+    private final LongAdder[] encodeLatencies = adders(POWER_OF_TWO_BUCKETS);
+
+    public XPCMetrics() {
+        this(DEFAULT_SHAPE_SAMPLE_RATE);
+    }
+
+    /**
+     * @param shapeSampleRate collect type counts and depths for one in this many operations
+     */
+    public XPCMetrics(int shapeSampleRate) {
+        if (shapeSampleRate < 1) {
+            throw new IllegalArgumentException("Sample rate must be positive (" + shapeSampleRate + ")");
+        }
+        this.shapeSampleRate = shapeSampleRate;
+    }
+
+    /**
+     * Installs {@code listener} for every codec operation in this class loader, or disables
+     * metrics when it is null.
+     */
+    public static void setListener(XPCMetricsListener listener) {
+        XPCMetrics.listener = listener;
+    }
+
+    /**
+     * The installed listener, or null when metrics are disabled.
+     */
+    public static XPCMetricsListener listener() {
+        return listener;
+    }
+
+    /**
+     * Registers this collector with the platform MBean server under {@link #OBJECT_NAME}.
+     */
+    public void register() throws JMException {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+    }
+
+    public void unregister() throws JMException {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(OBJECT_NAME));
+    }
+
+    @Override
+    public void record(Operation operation, XPCObject value, int bytes, long nanos) {
+        this.operations[operation.ordinal()].increment();
+        this.operationBytes[operation.ordinal()].add(bytes);
+        this.sizes[bucket(bytes)].increment();
+        var decode = operation == Operation.OBJECT_DECODE || operation == Operation.FRAME_DECODE;
+        (decode ? this.decodeLatencies : this.encodeLatencies)[bucket(nanos)].increment();
+        if (value != null && (this.shapeSampleRate == 1 || ThreadLocalRandom.current().nextInt(this.shapeSampleRate) == 0)) {
+            this.depths[Math.min(count(value, 0), DEPTH_BUCKETS - 1)].add(this.shapeSampleRate);
+        }
+    }
+
+    @Override
+    public long getObjectsDecoded() {
+        return this.operations[Operation.OBJECT_DECODE.ordinal()].sum();
+    }
+
+    @Override
+    public long getObjectsEncoded() {
+        return this.operations[Operation.OBJECT_ENCODE.ordinal()].sum();
+    }
+
+    @Override
+    public long getFramesDecoded() {
+        return this.operations[Operation.FRAME_DECODE.ordinal()].sum();
+    }
+
+    @Override
+    public long getFramesEncoded() {
+        return this.operations[Operation.FRAME_ENCODE.ordinal()].sum();
+    }
+
+    @Override
+    public long getBytesDecoded() {
+        return this.operationBytes[Operation.OBJECT_DECODE.ordinal()].sum()
+            + this.operationBytes[Operation.FRAME_DECODE.ordinal()].sum();
+    }
+
+    @Override
+    public long getBytesEncoded() {
+        return this.operationBytes[Operation.OBJECT_ENCODE.ordinal()].sum()
+            + this.operationBytes[Operation.FRAME_ENCODE.ordinal()].sum();
+    }
+
+    @Override
+    public Map<String, Long> getTypeCounts() {
+        var counts = new LinkedHashMap<String, Long>();
+        for (var type : XPCType.values()) {
+            counts.put(type.name(), this.types[type.ordinal()].sum());
+        }
+        return counts;
+    }
+
+    @Override
+    public long[] getSizeHistogram() {
+        return sums(this.sizes);
+    }
+
+    @Override
+    public long[] getDepthHistogram() {
+        return sums(this.depths);
+    }
+
+    @Override
+    public long[] getDecodeLatencyHistogram() {
+        return sums(this.decodeLatencies);
+    }
+
+    @Override
+    public long[] getEncodeLatencyHistogram() {
+        return sums(this.encodeLatencies);
+    }
+
+    @Override
+    public void reset() {
+        for (var adders : new LongAdder[][] { this.operations, this.operationBytes, this.types, this.sizes, this.depths, this.decodeLatencies, this.encodeLatencies }) {
+            for (var adder : adders) {
+                adder.reset();
+            }
+        }
+    }
+
+    /**
+     * Counts the types in {@code value} and returns the depth of its deepest container.
+     */
+    private int count(XPCObject value, int depth) {
+        this.types[value.type().ordinal()].add(this.shapeSampleRate);
+        var deepest = depth;
+        if (value instanceof XPCArray array) {
+            var items = array.value();
+            if (items instanceof XPCPackedArray<?> packed) {
+                this.types[packed.elementType().ordinal()].add((long) items.size() * this.shapeSampleRate);
+                return depth + 1;
+            }
+            deepest = depth + 1;
+            for (var item : items) {
+                deepest = Math.max(deepest, count(item, depth + 1));
+            }
+        } else if (value instanceof XPCDictionary dictionary) {
+            deepest = depth + 1;
+            for (var item : dictionary.value().values()) {
+                deepest = Math.max(deepest, count(item, depth + 1));
+            }
+        }
+        return deepest;
+    }
+
+    private static int bucket(long value) {
+        return value <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(value);
+    }
+
+    private static LongAdder[] adders(int length) {
+        var adders = new LongAdder[length];
+        for (int index = 0; index < length; index++) {
+            adders[index] = new LongAdder();
+        }
+        return adders;
+    }
+
+    private static long[] sums(LongAdder[] adders) {
+        var sums = new long[adders.length];
+        for (int index = 0; index < adders.length; index++) {
+            sums[index] = adders[index].sum();
+        }
+        return sums;
+    }
+}
@@ -0,0 +1,29 @@
+package ca.vijaysharma.apple.xpc;
+
+/**
+ * Receives one callback for every codec operation once installed with
+ * {@link XPCMetrics#setListener(XPCMetricsListener)}. Callbacks run on the thread that performed
+ * the operation, after it succeeded, so implementations must be thread safe, cheap and must not
+ * throw. Lazy decodes are reported without their value, since inspecting it would decode it.
+ */
+@FunctionalInterface
+public interface XPCMetricsListener {
+    enum Operation {
+        /** {@link XPCObject#from(byte[])}, {@link XPCObject#from(java.nio.ByteBuffer)}, {@link XPCObject#lazy(byte[])} and {@link XPCObject#view(byte[])} */
+        OBJECT_DECODE,
+        /** {@link XPCObject#bytes(XPCObject)} and {@link XPCObject#bytes(XPCObject, java.nio.ByteBuffer)} */
+        OBJECT_ENCODE,
+        /** {@link XPCWrapper#from(byte[])}, {@link XPCWrapper#from(java.nio.ByteBuffer)}, the lazy and view variants and {@link XPCFrameDecoder} */
+        FRAME_DECODE,
+        /** {@link XPCWrapper#bytes(long, XPCDictionary, XPCWrapper.XPCFlags...)} and its buffer variant */
+        FRAME_ENCODE,
+    }
+
+    /**
+     * @param value the decoded or encoded object; for frames the payload. Null for a frame
+     *              without a payload and for lazy decodes
+     * @param bytes encoded length, including the header for frames
+     * @param nanos time the operation took
+     */
+    void record(Operation operation, XPCObject value, int bytes, long nanos);
+}
@@ -0,0 +1,42 @@
+package ca.vijaysharma.apple.xpc;
+
+import java.util.Map;
+
+/**
+ * JMX view of an {@link XPCMetrics} collector. Histograms are arrays of counts where bucket
+ * {@code i} holds the values in {@code [2^(i-1), 2^i)}, and bucket 0 holds zero.
+ */
+public interface XPCMetricsMXBean {
+    long getObjectsDecoded();
+
+    long getObjectsEncoded();
+
+    long getFramesDecoded();
+
+    long getFramesEncoded();
+
+    long getBytesDecoded();
+
+    long getBytesEncoded();
+
+    /**
+     * Number of values of each {@link XPCType} seen in decoded and encoded objects, estimated
+     * from the sampled operations.
+     */
+    Map<String, Long> getTypeCounts();
+
+    long[] getSizeHistogram();
+
+    /**
+     * Counts by nesting depth rather than powers of two: bucket {@code i} holds the objects whose
+     * deepest container is nested {@code i} levels, and the last bucket everything deeper.
+     * Estimated from the sampled operations like the type counts.
+     */
+    long[] getDepthHistogram();
+
+    long[] getDecodeLatencyHistogram();
+
+    long[] getEncodeLatencyHistogram();
+
+    void reset();
+}
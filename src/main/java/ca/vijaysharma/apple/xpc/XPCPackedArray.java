@@ -0,0 +1,38 @@
+package ca.vijaysharma.apple.xpc;
+
+import java.util.AbstractList;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * Read-only {@link XPCArray} contents stored as a primitive array instead of one boxed
+ * {@link XPCObject} per element. Elements are boxed only when they are read through the
+ * {@link java.util.List} interface, and the encoder writes the primitive array directly,
+ * producing the same bytes as the equivalent boxed list.
+ *
+ * <p>The array passed to the constructor is not copied and must not be modified afterwards;
+ * {@code value()} returns a copy.
+ */
+abstract class XPCPackedArray<A> extends AbstractList<XPCObject> implements RandomAccess {
+    final A array;
+    private final int size;
+
+    XPCPackedArray(A array, int size) {
+        this.array = array;
+        this.size = size;
+    }
+
+    abstract XPCType elementType();
+
+    abstract XPCObject element(int index);
+
+    @Override
+    public final XPCObject get(int index) {
+        return element(Objects.checkIndex(index, this.size));
+    }
+
+    @Override
+    public final int size() {
+        return this.size;
+    }
+}
@@ -0,0 +1,148 @@
+package ca.vijaysharma.apple.xpc;
+
+import ca.vijaysharma.apple.xpc.exceptions.XPCException;
+import ca.vijaysharma.apple.xpc.exceptions.XPCInvalidValueException;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Rewrites values inside an encoded object or {@link XPCWrapper} frame without decoding and
+ * re-encoding the whole message. The value to replace is found with an {@link XPCPath}. When
+ * the replacement encodes to the same number of bytes as the old value, which is always the
+ * case for fixed-width values such as {@link XPCInt64}, {@link XPCUUID} or {@link XPCDate}, it
+ * is written over the old one in place. Otherwise only the replacement is encoded, the bytes
+ * around it are copied into a new array, and the lengths of the enclosing containers and of
+ * the frame are adjusted.
+ *
+ * <p>The patch works on the array it is given, which is modified in place until a replacement
+ * changes the size of the message; {@link #bytes()} returns the current array. A patch is not
+ * thread safe.
+ */
+public final class XPCPatch {
+    private static final int MESSAGE_ID_OFFSET = 16;
+    private static final int LENGTH_OFFSET = 8;
+    private static final int FLAGS_OFFSET = 4;
+
+    private byte[] bytes;
+    private final int start;
+    private final boolean frame;
+
+    private XPCPatch(byte[] bytes, int start, boolean frame) {
+        this.bytes = bytes;
+        this.start = start;
+        this.frame = frame;
+    }
+
+    /**
+     * Patches an encoded object.
+     */
+    public static XPCPatch object(byte[] bytes) {
+        return new XPCPatch(bytes, 0, false);
+    }
+
+    /**
+     * Patches an encoded frame, as produced by {@link XPCWrapper#bytes(long, XPCDictionary,
+     * XPCWrapper.XPCFlags...)}. Paths are applied to the frame's payload; a frame without a
+     * payload has no values to set.
+     */
+    public static XPCPatch frame(byte[] frame) throws XPCException {
+        var header = ByteBuffer.wrap(frame).order(ByteOrder.LITTLE_ENDIAN);
+        var magic = header.getInt(0);
+        if (magic != XPCWrapper.WRAPPER_MAGIC) {
+            throw new XPCInvalidValueException("Unexpected XPC Wrapper magic value " + magic);
+        }
+        var payloadStart = XPCWrapper.HEADER_LENGTH + 8;
+        if (header.getLong(LENGTH_OFFSET) != 0) {
+            var payloadMagic = header.getInt(XPCWrapper.HEADER_LENGTH);
+            if (payloadMagic != XPCWrapper.PAYLOAD_MAGIC) {
+                throw new XPCInvalidValueException("Unexpected XPC Payload magic value " + payloadMagic);
+            }
+            var protocolVersion = header.getInt(XPCWrapper.HEADER_LENGTH + 4);
+            if (protocolVersion != XPCWrapper.PAYLOAD_PROTOCOL_VERSION) {
+                throw new XPCInvalidValueException("Unsupported XPC Payload protocol version " + protocolVersion);
+            }
+        } else {
+            payloadStart = frame.length;
+        }
+        return new XPCPatch(frame, payloadStart, true);
+    }
+
+    /**
+     * Shorthand for {@code set(XPCPath.compile(path), value)}.
+     */
+    public boolean set(String path, XPCObject value) throws XPCException {
+        return set(XPCPath.compile(path), value);
+    }
+
+    /**
+     * Replaces the value at {@code path} with {@code value} and returns true, or returns false,
+     * leaving the message unchanged, if there is no value at {@code path}.
+     */
+    public boolean set(XPCPath path, XPCObject value) throws XPCException {
+        if (this.start >= this.bytes.length) {
+            return false;
+        }
+        var lengthOffsets = new int[path.depth()];
+        var reader = new XPCStreamReader(ByteBuffer.wrap(this.bytes, this.start, this.bytes.length - this.start));
+        if (!path.locate(reader, lengthOffsets)) {
+            return false;
+        }
+        var offset = this.start + reader.position();
+        XPCDecoder.skip(reader);
+        var oldSize = this.start + reader.position() - offset;
+        var newSize = XPCObject.size(value);
+        if (newSize == oldSize) {
+            XPCObject.bytes(value, ByteBuffer.wrap(this.bytes, offset, oldSize));
+            return true;
+        }
+
+        var delta = newSize - oldSize;
+        var patched = new byte[this.bytes.length + delta];
+        System.arraycopy(this.bytes, 0, patched, 0, offset);
+        XPCObject.bytes(value, ByteBuffer.wrap(patched, offset, newSize));
+        System.arraycopy(this.bytes, offset + oldSize, patched, offset + newSize, this.bytes.length - offset - oldSize);
+
+        var buffer = ByteBuffer.wrap(patched).order(ByteOrder.LITTLE_ENDIAN);
+        for (var lengthOffset : lengthOffsets) {
+            var at = this.start + lengthOffset;
+            buffer.putInt(at, buffer.getInt(at) + delta);
+        }
+        if (this.frame) {
+            buffer.putLong(LENGTH_OFFSET, buffer.getLong(LENGTH_OFFSET) + delta);
+        }
+        this.bytes = patched;
+        return true;
+    }
+
+    /**
+     * Overwrites the message id of the frame.
+     */
+    public XPCPatch messageId(long messageId) {
+        header().putLong(MESSAGE_ID_OFFSET, messageId);
+        return this;
+    }
+
+    /**
+     * Overwrites the flags of the frame.
+     */
+    public XPCPatch flags(XPCWrapper.XPCFlags...flags) {
+        header().putInt(FLAGS_OFFSET, XPCWrapper.XPCFlags.or(flags));
+        return this;
+    }
+
+    /**
+     * The patched message. This is the array the patch was created with unless a replacement
+     * changed the size of the message.
+     */
+    public byte[] bytes() {
+        return this.bytes;
+    }
+
+    private ByteBuffer header() {
+        if (!this.frame) {
+            throw new IllegalStateException("Not patching an XPC Wrapper frame");
+        }
+        return ByteBuffer.wrap(this.bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -0,0 +1,202 @@
+package ca.vijaysharma.apple.xpc;
+
+import ca.vijaysharma.apple.xpc.exceptions.XPCException;
+import ca.vijaysharma.apple.xpc.exceptions.XPCInvalidValueException;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Extracts a single value from an encoded object without decoding the rest of it. The path is
+ * walked over the encoded bytes: siblings before the target are skipped using their length
+ * prefixes and only the target value is decoded.
+ *
+ * <p>Paths are dictionary keys separated by dots, each optionally followed by array indices, as
+ * in {@code "Request.Params.items[3].name"}. Keys containing {@code .} or {@code [} can be
+ * addressed with {@link #of(Object...)}. A compiled path is immutable and can be reused from
+ * any thread.
+ */
+public final class XPCPath {
+    private final Object[] segments;
+
+    private XPCPath(Object[] segments) {
+        this.segments = segments;
+    }
+
+    /**
+     * Parses {@code path}, throwing {@link IllegalArgumentException} if it is malformed.
+     */
+    public static XPCPath compile(String path) {
+        var segments = new ArrayList<>();
+        var index = 0;
+        while (index < path.length()) {
+            var c = path.charAt(index);
+            if (c == '[') {
+                var end = path.indexOf(']', index);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Unterminated index in " + path);
+                }
+                try {
+                    segments.add(Integer.parseUnsignedInt(path, index + 1, end, 10));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid index in " + path, e);
+                }
+                index = end + 1;
+            } else {
+                if (c == '.') {
+                    if (segments.isEmpty()) {
+                        throw new IllegalArgumentException("Empty key in " + path);
+                    }
+                    index++;
+                }
+                var end = index;
+                while (end < path.length() && path.charAt(end) != '.' && path.charAt(end) != '[') {
+                    end++;
+                }
+                if (end == index) {
+                    throw new IllegalArgumentException("Empty key in " + path);
+                }
+                segments.add(path.substring(index, end));
+                index = end;
+            }
+        }
+        return new XPCPath(segments.toArray());
+    }
+
+    /**
+     * Path made of {@link String} keys and {@link Integer} indices.
+     */
+    public static XPCPath of(Object...segments) {
+        for (var segment : segments) {
+            if (!(segment instanceof String) && !(segment instanceof Integer index && index >= 0)) {
+                throw new IllegalArgumentException("Path segments must be keys or non-negative indices (" + segment + ")");
+            }
+        }
+        return new XPCPath(segments.clone());
+    }
+
+    /**
+     * Shorthand for {@code compile(path).get(bytes)}.
+     */
+    public static XPCObject get(byte[] bytes, String path) throws XPCException {
+        return compile(path).get(bytes);
+    }
+
+    /**
+     * Returns the value at this path in the encoded object, or null when a key is missing, an
+     * index is out of range or a segment does not match the type of the value it is applied to.
+     */
+    public XPCObject get(byte[] bytes) throws XPCException {
+        return get(new XPCStreamReader(bytes));
+    }
+
+    /**
+     * Like {@link #get(byte[])} for the object starting at the buffer's position; the buffer's
+     * position is not changed.
+     */
+    public XPCObject get(ByteBuffer bytes) throws XPCException {
+        return get(new XPCStreamReader(bytes));
+    }
+
+    /**
+     * Like {@link #get(byte[])}, with the path applied to the payload of an encoded
+     * {@link XPCWrapper} frame. Returns null for a frame without a payload.
+     */
+    public XPCObject getFromFrame(byte[] frame) throws XPCException {
+        var reader = new XPCStreamReader(frame);
+        var magic = reader.readInt32();
+        if (magic != XPCWrapper.WRAPPER_MAGIC) {
+            throw new XPCInvalidValueException("Unexpected XPC Wrapper magic value " + magic);
+        }
+        reader.skip(4);
+        if (reader.readInt64() == 0) {
+            return null;
+        }
+        reader.skip(8);
+        var payloadMagic = reader.readInt32();
+        if (payloadMagic != XPCWrapper.PAYLOAD_MAGIC) {
+            throw new XPCInvalidValueException("Unexpected XPC Payload magic value " + payloadMagic);
+        }
+        var protocolVersion = reader.readInt32();
+        if (protocolVersion != XPCWrapper.PAYLOAD_PROTOCOL_VERSION) {
+            throw new XPCInvalidValueException("Unsupported XPC Payload protocol version " + protocolVersion);
+        }
+        return get(reader);
+    }
+
+    private XPCObject get(XPCStreamReader reader) throws XPCException {
+        return locate(reader, null) ? XPCDecoder.decode(reader) : null;
+    }
+
+    /**
+     * Moves the reader to the start of the value this path points to and returns true, or
+     * returns false if there is no such value. The whole walk happens on the one reader, so when
+     * {@code lengthOffsets} is given it receives the reader position of the length field of
+     * every container the path enters, outermost first.
+     */
+    boolean locate(XPCStreamReader reader, int[] lengthOffsets) throws XPCException {
+        for (int depth = 0; depth < this.segments.length; depth++) {
+            var segment = this.segments[depth];
+            var type = reader.readType();
+            if (type != (segment instanceof String ? XPCType.XPC_DICTIONARY : XPCType.XPC_ARRAY)) {
+                return false;
+            }
+            if (lengthOffsets != null) {
+                lengthOffsets[depth] = reader.position();
+            }
+            var end = reader.position() + 4 + reader.readInt32();
+            var found = segment instanceof String key ? seekKey(reader, key) : seekIndex(reader, (Integer) segment);
+            if (!found || reader.position() >= end) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    int depth() {
+        return this.segments.length;
+    }
+
+    private static boolean seekKey(XPCStreamReader dictionary, String key) throws XPCException {
+        var count = XPCDecoder.readCount(dictionary);
+        for (int index = 0; index < count; index++) {
+            if (dictionary.readDictionaryKey().equals(key)) {
+                return true;
+            }
+            XPCDecoder.skip(dictionary);
+        }
+        return false;
+    }
+
+    private static boolean seekIndex(XPCStreamReader array, int target) throws XPCException {
+        var count = XPCDecoder.readCount(array);
+        if (target >= count) {
+            return false;
+        }
+        for (int index = 0; index < target; index++) {
+            XPCDecoder.skip(array);
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        var path = new StringBuilder();
+        for (var segment : this.segments) {
+            if (segment instanceof Integer index) {
+                path.append('[').append(index).append(']');
+            } else {
+                if (path.length() > 0) {
+                    path.append('.');
+                }
+                path.append(segment);
+            }
+        }
+        return path.toString();
+    }
+
+    List<Object> segments() {
+        return List.of(this.segments);
+    }
+}
@@ -0,0 +1,233 @@
+package ca.vijaysharma.apple.xpc;
+
+import ca.vijaysharma.apple.xpc.exceptions.XPCException;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Publishes the {@link XPCWrapper} frames read from a byte source to a single subscriber, at the
+ * pace the subscriber requests them. The source is only read while there is outstanding demand,
+ * so a slow subscriber pauses decoding and, for a socket, lets TCP flow control push back on the
+ * peer; at most one read buffer and one partially received frame are held in memory. The source
+ * is never read ahead without demand, so when it ends right after the last requested frame,
+ * completion is only signalled once another frame is requested.
+ *
+ * <p>Reading happens on the given executor, by default a virtual thread where available, and
+ * may block there. The publisher owns its source: it is closed when the stream completes, fails
+ * or is cancelled. A source that ends in the middle of a frame fails with an
+ * {@link EOFException}. All signals to the subscriber are sent from the drain loop, one at a
+ * time; if {@code onNext} throws, the subscription is cancelled and the exception is passed to
+ * {@code onError}.
+ */
+public class XPCPublisher implements Flow.Publisher<XPCWrapper> {
+    private static final int READ_BUFFER_LENGTH = 64 * 1024;
+
+    private interface Source {
+        /**
+         * Next chunk of bytes, or null at the end of the source.
+         */
+        ByteBuffer next() throws IOException;
+
+        void close() throws IOException;
+    }
+
+    private final Source source;
+    private final Executor executor;
+    private final AtomicBoolean subscribed = new AtomicBoolean(false);
+
+    /**
+     * Publishes the frames read from a blocking {@code channel}.
+     */
+    public XPCPublisher(ReadableByteChannel channel) {
+        this(channel, XPCServer.newThreadPerTaskExecutor());
+    }
+
+    public XPCPublisher(ReadableByteChannel channel, Executor executor) {
+        this(channelSource(channel), executor);
+    }
+
+    /**
+     * Publishes the frames in a stream of chunks, which may split frames anywhere.
+     */
+    public XPCPublisher(Stream<ByteBuffer> chunks) {
+        this(chunks, XPCServer.newThreadPerTaskExecutor());
+    }
+
+    public XPCPublisher(Stream<ByteBuffer> chunks, Executor executor) {
+        this(chunkSource(chunks), executor);
+    }
+
+    private XPCPublisher(Source source, Executor executor) {
+        this.source = source;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super XPCWrapper> subscriber) {
+        if (!this.subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {}
+
+                @Override
+                public void cancel() {}
+            });
+            subscriber.onError(new IllegalStateException("XPCPublisher only supports a single subscriber"));
+            return;
+        }
+        var subscription = new Subscription(subscriber);
+        subscriber.onSubscribe(subscription);
+    }
+
+    private class Subscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super XPCWrapper> subscriber;
+        private final XPCFrameDecoder decoder = new XPCFrameDecoder();
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger pending = new AtomicInteger();
+        private volatile boolean done = false;
+        private volatile Throwable error = null;
+        private ByteBuffer chunk = ByteBuffer.allocate(0);
+
+        Subscription(Flow.Subscriber<? super XPCWrapper> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                // delivered by the drain loop, which may be calling onNext right now
+                if (this.error == null) {
+                    this.error = new IllegalArgumentException("Requested " + n + " frames, must be positive");
+                }
+                schedule();
+                return;
+            }
+            this.demand.getAndAccumulate(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            if (!this.done) {
+                this.done = true;
+                closeSource();
+            }
+        }
+
+        private void schedule() {
+            if (this.pending.getAndIncrement() == 0) {
+                XPCPublisher.this.executor.execute(this::drain);
+            }
+        }
+
+        /**
+         * Emits frames while there is demand. Only one drain runs at a time; requests that
+         * arrive while it runs are picked up before it returns.
+         */
+        private void drain() {
+            var missed = 1;
+            do {
+                while (!this.done && this.error == null && this.demand.get() > 0) {
+                    XPCWrapper frame;
+                    try {
+                        frame = nextFrame();
+                    } catch (IOException | XPCException | RuntimeException e) {
+                        fail(e);
+                        return;
+                    }
+                    if (frame == null) {
+                        this.done = true;
+                        closeSource();
+                        this.subscriber.onComplete();
+                        return;
+                    }
+                    this.demand.decrementAndGet();
+                    try {
+                        this.subscriber.onNext(frame);
+                    } catch (RuntimeException e) {
+                        fail(e);
+                        return;
+                    }
+                }
+                if (this.error != null) {
+                    fail(this.error);
+                    return;
+                }
+                missed = this.pending.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void fail(Throwable e) {
+            if (!this.done) {
+                this.done = true;
+                closeSource();
+                this.subscriber.onError(e);
+            }
+        }
+
+        private XPCWrapper nextFrame() throws IOException, XPCException {
+            while (true) {
+                var frame = this.decoder.next(this.chunk);
+                if (frame != null) {
+                    return frame;
+                }
+                this.chunk = XPCPublisher.this.source.next();
+                if (this.chunk == null) {
+                    if (this.decoder.hasPartialFrame()) {
+                        throw new EOFException("Source ended in the middle of a frame");
+                    }
+                    return null;
+                }
+            }
+        }
+
+        private void closeSource() {
+            try {
+                XPCPublisher.this.source.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static Source channelSource(ReadableByteChannel channel) {
+        var buffer = ByteBuffer.allocate(READ_BUFFER_LENGTH);
+        return new Source() {
+            @Override
+            public ByteBuffer next() throws IOException {
+                buffer.clear();
+                var read = channel.read(buffer);
+                return read < 0 ? null : buffer.flip();
+            }
+
+            @Override
+            public void close() throws IOException {
+                channel.close();
+            }
+        };
+    }
+
+    private static Source chunkSource(Stream<ByteBuffer> chunks) {
+        Iterator<ByteBuffer> iterator = chunks.iterator();
+        return new Source() {
+            @Override
+            public ByteBuffer next() {
+                return iterator.hasNext() ? iterator.next() : null;
+            }
+
+            @Override
+            public void close() {
+                chunks.close();
+            }
+        };
+    }
+}
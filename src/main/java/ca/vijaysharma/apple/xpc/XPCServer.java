@@ -0,0 +1,231 @@
+package ca.vijaysharma.apple.xpc;
+
+import ca.vijaysharma.apple.xpc.exceptions.XPCException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Accepts connections on a socket and dispatches every {@link XPCWrapper} frame received on them
+ * to a {@link Handler}. Each connection is served by its own thread, reading frames with an
+ * {@link XPCFrameDecoder} and calling the handler for one frame at a time, in order.
+ *
+ * <p>On runtimes with virtual threads (Java 21 and later) every connection gets a virtual
+ * thread, so tens of thousands of mostly idle connections don't each hold a platform thread.
+ * Older runtimes fall back to a cached pool of platform threads. An idle connection only holds a
+ * small read buffer; larger buffers are borrowed from a pool shared by all connections while
+ * data keeps arriving faster than it is read.
+ *
+ * <p>Failures that close a connection, whether thrown by the handler or caused by I/O or an
+ * invalid frame, are passed to the {@link ErrorHandler}, which logs them by default.
+ *
+ * <pre>{@code
+ * try (var server = new XPCServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), request ->
+ *     new XPCDictionary(Map.of("echo", request.payload)))) {
+ *     server.start();
+ *     ...
+ * }
+ * }</pre>
+ */
+public class XPCServer implements Closeable {
+    /**
+     * Handles one frame. When the frame has {@link XPCWrapper.XPCFlags#WANTING_REPLY} set, a
+     * non-null result is sent back as a {@link XPCWrapper.XPCFlags#REPLY} with the same message
+     * id; otherwise the result is ignored. Throwing closes the connection and reports the
+     * exception to the {@link ErrorHandler}.
+     */
+    @FunctionalInterface
+    public interface Handler {
+        XPCDictionary handle(XPCWrapper request) throws XPCException, IOException;
+    }
+
+    /**
+     * Told about every failure that closes a connection, or stops the server from accepting
+     * new ones, in which case {@code remote} is null. Runs on the connection's thread.
+     */
+    @FunctionalInterface
+    public interface ErrorHandler {
+        void failed(SocketAddress remote, Exception error);
+    }
+
+    private static final int IDLE_BUFFER_LENGTH = 512;
+    private static final int READ_BUFFER_LENGTH = 64 * 1024;
+    private static final int POOLED_READ_BUFFERS = 64;
+    private static final System.Logger LOGGER = System.getLogger(XPCServer.class.getName());
+
+    private final ServerSocketChannel server;
+    private final Handler handler;
+    private final int maxFrameLength;
+    private final ExecutorService executor = newThreadPerTaskExecutor();
+    private final Set<SocketChannel> connections = ConcurrentHashMap.newKeySet();
+    private final XPCBufferPool readBuffers = new XPCBufferPool(POOLED_READ_BUFFERS, READ_BUFFER_LENGTH);
+    private volatile ErrorHandler errors = (remote, error) ->
+        LOGGER.log(System.Logger.Level.WARNING, "XPC connection " + remote + " failed", error);
+
+    public XPCServer(SocketAddress address, Handler handler) throws IOException {
+        this(address, handler, XPCFrameDecoder.DEFAULT_MAX_FRAME_LENGTH);
+    }
+
+    /**
+     * Binds to {@code address}; connections are only accepted after {@link #start()}.
+     *
+     * @param maxFrameLength largest payload length accepted before a connection is closed
+     */
+    public XPCServer(SocketAddress address, Handler handler, int maxFrameLength) throws IOException {
+        this.server = ServerSocketChannel.open().bind(address);
+        this.handler = handler;
+        this.maxFrameLength = maxFrameLength;
+    }
+
+    /**
+     * Replaces the default error handler, which logs to the {@code System.Logger} named after
+     * this class.
+     */
+    public XPCServer onError(ErrorHandler errors) {
+        this.errors = errors;
+        return this;
+    }
+
+    public XPCServer start() {
+        this.executor.execute(this::accept);
+        return this;
+    }
+
+    /**
+     * The bound address, including the port chosen when binding to port 0.
+     */
+    public SocketAddress address() throws IOException {
+        return this.server.getLocalAddress();
+    }
+
+    /**
+     * Number of currently open connections.
+     */
+    public int connections() {
+        return this.connections.size();
+    }
+
+    /**
+     * Stops accepting connections and closes every open one.
+     */
+    @Override
+    public void close() throws IOException {
+        this.server.close();
+        for (var connection : this.connections) {
+            connection.close();
+        }
+        this.executor.shutdown();
+    }
+
+    private void accept() {
+        try {
+            while (true) {
+                var connection = this.server.accept();
+                this.connections.add(connection);
+                try {
+                    this.executor.execute(() -> serve(connection));
+                } catch (RejectedExecutionException e) {
+                    // accepted while close() ran
+                    this.connections.remove(connection);
+                    connection.close();
+                    return;
+                }
+            }
+        } catch (ClosedChannelException e) {
+            // closed by close()
+        } catch (IOException e) {
+            this.errors.failed(null, e);
+            try {
+                this.server.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void serve(SocketChannel connection) {
+        var remote = remoteAddress(connection);
+        var decoder = new XPCFrameDecoder(this.maxFrameLength);
+        var idle = ByteBuffer.allocate(IDLE_BUFFER_LENGTH);
+        var buffer = idle;
+        try (connection) {
+            int read;
+            while ((read = connection.read(buffer)) >= 0) {
+                var full = read == buffer.capacity();
+                buffer.flip();
+                XPCWrapper frame;
+                while ((frame = decoder.next(buffer)) != null) {
+                    dispatch(connection, frame);
+                }
+                buffer.clear();
+                // only hold a large buffer while reads keep filling the one we have
+                if (full && buffer == idle) {
+                    buffer = this.readBuffers.acquire(READ_BUFFER_LENGTH);
+                } else if (!full && buffer != idle) {
+                    this.readBuffers.release(buffer);
+                    buffer = idle;
+                }
+            }
+        } catch (IOException | XPCException | RuntimeException e) {
+            // the connection can't be trusted to be on a frame boundary anymore
+            if (this.server.isOpen()) {
+                this.errors.failed(remote, e);
+            }
+        } finally {
+            if (buffer != idle) {
+                this.readBuffers.release(buffer);
+            }
+            this.connections.remove(connection);
+        }
+    }
+
+    private static SocketAddress remoteAddress(SocketChannel connection) {
+        try {
+            return connection.getRemoteAddress();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void dispatch(SocketChannel connection, XPCWrapper request) throws IOException, XPCException {
+        var reply = this.handler.handle(request);
+        if (reply == null || !request.flags.contains(XPCWrapper.XPCFlags.WANTING_REPLY)) {
+            return;
+        }
+        var bytes = ByteBuffer.wrap(XPCWrapper.bytes(
+            request.messageId,
+            reply,
+            XPCWrapper.XPCFlags.ALWAYS_SET,
+            XPCWrapper.XPCFlags.REPLY
+        ));
+        while (bytes.hasRemaining()) {
+            connection.write(bytes);
+        }
+    }
+
+    /**
+     * One virtual thread per task when the runtime has them, looked up reflectively because the
+     * library targets a release without them; a cached platform thread pool otherwise.
+     */
+    static ExecutorService newThreadPerTaskExecutor() {
+        try {
+            var factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                var thread = new Thread(runnable, "xpc-server");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
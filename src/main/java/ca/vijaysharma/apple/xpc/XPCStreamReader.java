@@ -2,46 +2,69 @@ package ca.vijaysharma.apple.xpc;
 
 import ca.vijaysharma.apple.xpc.exceptions.XPCInvalidTypeException;
 
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.util.Arrays;
+import java.util.UUID;
 
 import static ca.vijaysharma.apple.xpc.XPCUtilities.roundUp;
-import static java.nio.charset.StandardCharsets.UTF_8;
 
+/**
+ * Reads XPC values from a little endian view of a buffer. Nested streams and the framing in
+ * {@link XPCWrapper} are bounded slices of the same backing memory, so the only copies made
+ * are the ones that end up in the decoded values.
+ */
 class XPCStreamReader {
-    private static final byte[] NULL_TERMINATED = { 0x00 };
     private final ByteBuffer bytes;
     public XPCStreamReader(byte[] bytes) {
-        this.bytes = ByteBuffer.wrap(bytes);
+        this(ByteBuffer.wrap(bytes));
+    }
+
+    XPCStreamReader(ByteBuffer bytes) {
+        this.bytes = bytes.slice().order(ByteOrder.LITTLE_ENDIAN);
     }
 
     byte[] readBytes(int length) {
         var alignedLength = roundUp(length, 4);
-        byte[] read = new byte[alignedLength];
-        this.bytes.order(ByteOrder.LITTLE_ENDIAN).get(read, 0,  alignedLength);
-        return Arrays.copyOf(read, length);
+        ensure(alignedLength);
+        byte[] read = new byte[length];
+        this.bytes.get(read);
+        this.bytes.position(this.bytes.position() + alignedLength - length);
+        return read;
     }
 
     int readInt32() {
-        return this.bytes.order(ByteOrder.LITTLE_ENDIAN).getInt();
+        return this.bytes.getInt();
     }
 
     long readInt64() {
-        return this.bytes.order(ByteOrder.LITTLE_ENDIAN).getLong();
+        return this.bytes.getLong();
     }
 
     double readDouble() {
         // TODO: I'm not sure if doubles are stored as small or big endian :(
         // pymobiledevice3 treats it as big endian
         // but t2-xpc says its little endian
-        return this.bytes.order(ByteOrder.BIG_ENDIAN).getDouble();
+        return Double.longBitsToDouble(Long.reverseBytes(this.bytes.getLong()));
     }
 
-    String readAlignedStringLength(int length) {
+    UUID readUUID() {
+        var most = Long.reverseBytes(this.bytes.getLong());
+        var least = Long.reverseBytes(this.bytes.getLong());
+        return new UUID(most, least);
+    }
+
+    /**
+     * Reads a string whose declared {@code length} includes the NUL terminator, and skips the
+     * padding after it. The bytes are decoded straight from the source buffer and anything
+     * other than the terminator, whitespace included, is kept.
+     */
+    String readString(int length) {
         var alignedLength = roundUp(length, 4);
-        var bytes = readBytes(alignedLength);
-        return new String(bytes, UTF_8).trim();
+        ensure(alignedLength);
+        var string = XPCUtilities.decodeUtf8(this.bytes, this.bytes.position(), Math.max(0, length - 1));
+        this.bytes.position(this.bytes.position() + alignedLength);
+        return string;
     }
 
     XPCStreamReader readStream(int length) {
@@ -49,12 +72,32 @@ class XPCStreamReader {
             throw new RuntimeException("Can only read byte stream as a multiple of 4");
         }
 
-        return new XPCStreamReader(this.readBytes(length));
+        return new XPCStreamReader(readSlice(length));
+    }
+
+    /**
+     * Returns a view of the next {@code length} bytes and advances past them. The view shares
+     * the backing memory of this reader.
+     */
+    ByteBuffer readSlice(int length) {
+        ensure(length);
+        var slice = this.bytes.slice(this.bytes.position(), length).order(ByteOrder.LITTLE_ENDIAN);
+        this.bytes.position(this.bytes.position() + length);
+        return slice;
     }
 
+    /**
+     * Reads a NUL terminated, 4 byte aligned dictionary key. Keys are interned through
+     * {@link XPCKeyCache#SHARED}, so repeated keys are neither decoded nor allocated again.
+     */
     String readDictionaryKey() {
-        var position = find(NULL_TERMINATED);
-        return readAlignedStringLength(position + 1);
+        var length = findNul();
+        if (length < 0) {
+            throw new BufferUnderflowException();
+        }
+        var key = XPCKeyCache.SHARED.lookup(this.bytes, this.bytes.position(), length);
+        skip(roundUp(length + 1, 4));
+        return key;
     }
 
     XPCType readType() throws XPCInvalidTypeException {
@@ -62,25 +105,53 @@ class XPCStreamReader {
         return XPCType.from(type);
     }
 
-    private int find(byte[] target) {
-        int pos = -1;
+    int remaining() {
+        return this.bytes.remaining();
+    }
 
-        for (int i = 0; i < bytes.remaining() - target.length + 1; i++) {
-            boolean found = true;
+    int position() {
+        return this.bytes.position();
+    }
 
-            for (int j = 0; j < target.length; j++) {
-                if (bytes.get(bytes.position() + i + j) != target[j]) {
-                    found = false;
-                    break;
-                }
-            }
+    /**
+     * Moves back to a position previously returned by {@link #position()}.
+     */
+    void seek(int position) {
+        this.bytes.position(position);
+    }
 
-            if (found) {
-                pos = i;
-                break;
-            }
+    void skip(int length) {
+        ensure(length);
+        this.bytes.position(this.bytes.position() + length);
+    }
+
+    private void ensure(int length) {
+        if (length < 0 || length > this.bytes.remaining()) {
+            throw new BufferUnderflowException();
         }
+    }
 
-        return pos;
+    /**
+     * Returns the distance from the current position to the next NUL byte, or -1 if there is
+     * none. Eight bytes are tested per step with the usual SWAR zero-byte check, which flags
+     * the lowest zero byte of a little endian word exactly, and the tail is scanned bytewise.
+     */
+    private int findNul() {
+        var start = this.bytes.position();
+        var limit = this.bytes.limit();
+        var index = start;
+        for (; index + Long.BYTES <= limit; index += Long.BYTES) {
+            var word = this.bytes.getLong(index);
+            var zeros = (word - 0x0101010101010101L) & ~word & 0x8080808080808080L;
+            if (zeros != 0) {
+                return index - start + (Long.numberOfTrailingZeros(zeros) >>> 3);
+            }
+        }
+        for (; index < limit; index++) {
+            if (this.bytes.get(index) == 0) {
+                return index - start;
+            }
+        }
+        return -1;
     }
 }
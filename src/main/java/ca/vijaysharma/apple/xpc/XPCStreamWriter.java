@@ -1,19 +1,69 @@
 package ca.vijaysharma.apple.xpc;
 
-import java.io.ByteArrayOutputStream;
+import ca.vijaysharma.apple.xpc.exceptions.XPCException;
+
+import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Growable, resettable encode buffer. Writers can be kept and reused across messages with
+ * {@link #reset()}; when created with an {@link XPCBufferPool} the backing buffer is leased
+ * from the pool and handed back by {@link #close()}, so steady state encoding does not
+ * allocate. Instances are not thread safe.
+ *
+ * <pre>{@code
+ * try (var writer = new XPCStreamWriter(pool)) {
+ *     for (var message : messages) {
+ *         writer.reset();
+ *         writer.writeWrapper(message.id(), message.payload(), ALWAYS_SET);
+ *         writer.writeTo(channel);
+ *     }
+ * }
+ * }</pre>
+ */
+public class XPCStreamWriter implements AutoCloseable {
+    private static final int INITIAL_CAPACITY = 256;
 
-public class XPCStreamWriter {
-    private final ByteArrayOutputStream stream;
+    private final XPCBufferPool pool;
+    private final XPCEncoder encoder = new XPCEncoder();
+    private ByteBuffer buffer;
 
     public XPCStreamWriter() {
-        this.stream = new ByteArrayOutputStream();;
+        this.pool = null;
+        this.buffer = ByteBuffer.allocate(INITIAL_CAPACITY).order(ByteOrder.LITTLE_ENDIAN);
     }
 
+    public XPCStreamWriter(XPCBufferPool pool) {
+        this.pool = pool;
+        this.buffer = pool.acquire(INITIAL_CAPACITY);
+    }
 
     public byte[] toByteArray() {
-        return stream.toByteArray();
+        var bytes = new byte[this.buffer.position()];
+        this.buffer.get(0, bytes);
+        return bytes;
+    }
+
+    /**
+     * Read-only view of the bytes written so far. The view shares the writer's buffer and is
+     * only valid until the next write, {@link #reset()} or {@link #close()}.
+     */
+    public ByteBuffer toByteBuffer() {
+        return this.buffer.asReadOnlyBuffer().flip().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public int size() {
+        return this.buffer.position();
+    }
+
+    /**
+     * Discards the bytes written so far and keeps the buffer for the next message.
+     */
+    public void reset() {
+        this.buffer.clear();
     }
 
     public void write(XPCType type) {
@@ -21,30 +71,131 @@ public class XPCStreamWriter {
     }
 
     public void writeInt32(int value) {
-        stream.writeBytes(ByteBuffer.allocate(4)
-            .order(ByteOrder.LITTLE_ENDIAN)
-            .putInt(value)
-            .array()
-        );
+        ensure(4);
+        this.buffer.putInt(value);
     }
 
     public void writeInt64(long value) {
-        stream.writeBytes(ByteBuffer.allocate(8)
-            .order(ByteOrder.LITTLE_ENDIAN)
-            .putLong(value)
-            .array()
-        );
+        ensure(8);
+        this.buffer.putLong(value);
     }
 
     public void writeDouble(double value) {
-        stream.writeBytes(ByteBuffer.allocate(8)
-            .order(ByteOrder.BIG_ENDIAN)
-            .putDouble(value)
-            .array()
-        );
+        ensure(8);
+        this.buffer.putLong(Long.reverseBytes(Double.doubleToRawLongBits(value)));
     }
 
     public void writeBytes(byte[] bytes) {
-        stream.writeBytes(bytes);
+        ensure(bytes.length);
+        this.buffer.put(bytes);
+    }
+
+    /**
+     * Writes {@code data} followed by zero padding up to a multiple of 4 of {@code length}.
+     */
+    void writeAligned(byte[] data, int length) {
+        var aligned = XPCUtilities.roundUp(length, 4);
+        ensure(aligned);
+        this.buffer.put(data);
+        for (int index = data.length; index < aligned; index++) {
+            this.buffer.put((byte) 0x00);
+        }
+    }
+
+    /**
+     * Writes {@code string} as UTF-8 with a NUL terminator and zero padding up to a multiple
+     * of 4, encoding straight into the buffer. {@code length} is the string's UTF-8 length.
+     */
+    void writeAlignedString(String string, int length) {
+        ensure(XPCUtilities.roundUp(length + 1, 4));
+        XPCUtilities.putAlignedUtf8(this.buffer, string, length);
+    }
+
+    /**
+     * Writes a placeholder int32 and returns its offset, to be filled in by {@link #patchInt32(int, int)}.
+     */
+    int reserveInt32() {
+        var offset = this.buffer.position();
+        writeInt32(0);
+        return offset;
+    }
+
+    void patchInt32(int offset, int value) {
+        this.buffer.putInt(offset, value);
+    }
+
+    /**
+     * Appends the encoding of {@code object}, see {@link XPCObject#bytes(XPCObject)}.
+     */
+    public void writeObject(XPCObject object) throws XPCException {
+        var event = new XPCFlightEvents.ObjectEncode();
+        event.begin();
+        var listener = XPCMetrics.listener();
+        var start = listener == null ? 0 : System.nanoTime();
+        var length = this.encoder.measure(object);
+        ensure(length);
+        this.encoder.write(object, this.buffer);
+        if (listener != null) {
+            listener.record(XPCMetricsListener.Operation.OBJECT_ENCODE, object, length, System.nanoTime() - start);
+        }
+        XPCFlightEvents.commit(event, object, length);
+    }
+
+    /**
+     * Appends a wrapper frame, see {@link XPCWrapper#bytes(long, XPCDictionary, XPCWrapper.XPCFlags...)}.
+     */
+    public void writeWrapper(long messageId, XPCDictionary payload, XPCWrapper.XPCFlags...flags) throws XPCException {
+        var event = new XPCFlightEvents.FrameEncode();
+        event.begin();
+        var listener = XPCMetrics.listener();
+        var start = listener == null ? 0 : System.nanoTime();
+        var length = XPCWrapper.measure(this.encoder, payload);
+        ensure(XPCWrapper.HEADER_LENGTH + length);
+        XPCWrapper.write(this.buffer, this.encoder, length, messageId, payload, flags);
+        if (listener != null) {
+            listener.record(XPCMetricsListener.Operation.FRAME_ENCODE, payload, XPCWrapper.HEADER_LENGTH + length, System.nanoTime() - start);
+        }
+        XPCFlightEvents.commit(event, messageId, flags, XPCWrapper.HEADER_LENGTH + length);
+    }
+
+    public void writeTo(OutputStream stream) throws IOException {
+        if (this.buffer.hasArray()) {
+            stream.write(this.buffer.array(), this.buffer.arrayOffset(), this.buffer.position());
+        } else {
+            stream.write(toByteArray());
+        }
+    }
+
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        var view = this.buffer.duplicate().flip();
+        while (view.hasRemaining()) {
+            channel.write(view);
+        }
+    }
+
+    /**
+     * Returns the buffer to the pool, if the writer has one. The writer must not be used afterwards.
+     */
+    @Override
+    public void close() {
+        if (this.pool != null && this.buffer != null) {
+            this.pool.release(this.buffer);
+        }
+        this.buffer = null;
+    }
+
+    private void ensure(int length) {
+        if (this.buffer.remaining() >= length) {
+            return;
+        }
+        var capacity = Math.max(this.buffer.capacity() * 2, this.buffer.position() + length);
+        var grown = this.pool == null
+            ? ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN)
+            : this.pool.acquire(capacity);
+        grown.put(this.buffer.flip());
+        if (this.pool != null) {
+            this.pool.release(this.buffer);
+        }
+        this.buffer = grown;
     }
 }
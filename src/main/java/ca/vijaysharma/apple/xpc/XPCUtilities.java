@@ -1,5 +1,10 @@
 package ca.vijaysharma.apple.xpc;
 
+import java.nio.ByteBuffer;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 class XPCUtilities {
     private XPCUtilities() {}
 
@@ -7,4 +12,93 @@ class XPCUtilities {
         var remainder = (number % multiple);
         return remainder == 0 ? number : number + (multiple - remainder);
     }
+
+    /**
+     * Number of bytes {@code string} occupies when encoded as UTF-8, computed without
+     * allocating the encoded bytes. Unpaired surrogates count as the single '?' the
+     * JDK encoder substitutes for them.
+     */
+    public static int utf8Length(String string) {
+        int length = string.length();
+        int bytes = length;
+        for (int index = 0; index < length; index++) {
+            char c = string.charAt(index);
+            if (c < 0x80) {
+                continue;
+            }
+            if (c < 0x800) {
+                bytes += 1;
+            } else if (Character.isHighSurrogate(c)
+                && index + 1 < length
+                && Character.isLowSurrogate(string.charAt(index + 1))) {
+                bytes += 2;
+                index++;
+            } else if (Character.isSurrogate(c)) {
+                // replaced by '?'
+            } else {
+                bytes += 2;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Decodes {@code length} UTF-8 bytes at {@code offset} without changing the buffer's
+     * position. Heap buffers are decoded in place; pure ASCII input is decoded as Latin-1,
+     * which the JDK turns into a compact string with a single copy.
+     */
+    static String decodeUtf8(ByteBuffer buffer, int offset, int length) {
+        byte[] array;
+        int start;
+        if (buffer.hasArray()) {
+            array = buffer.array();
+            start = buffer.arrayOffset() + offset;
+        } else {
+            array = new byte[length];
+            start = 0;
+            buffer.get(offset, array);
+        }
+        for (int index = start; index < start + length; index++) {
+            if (array[index] < 0) {
+                return new String(array, start, length, UTF_8);
+            }
+        }
+        return new String(array, start, length, ISO_8859_1);
+    }
+
+    /**
+     * Writes {@code string} as UTF-8 followed by a NUL terminator and zero padding up to a
+     * multiple of 4, without allocating the encoded bytes. {@code utf8Length} must be
+     * {@link #utf8Length(String)} of the string; the buffer must have room for
+     * {@code roundUp(utf8Length + 1, 4)} bytes.
+     */
+    static void putAlignedUtf8(ByteBuffer buffer, String string, int utf8Length) {
+        int length = string.length();
+        for (int index = 0; index < length; index++) {
+            char c = string.charAt(index);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xc0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3f)));
+            } else if (Character.isHighSurrogate(c)
+                && index + 1 < length
+                && Character.isLowSurrogate(string.charAt(index + 1))) {
+                int codePoint = Character.toCodePoint(c, string.charAt(++index));
+                buffer.put((byte) (0xf0 | (codePoint >> 18)));
+                buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3f)));
+                buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3f)));
+                buffer.put((byte) (0x80 | (codePoint & 0x3f)));
+            } else if (Character.isSurrogate(c)) {
+                buffer.put((byte) '?');
+            } else {
+                buffer.put((byte) (0xe0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3f)));
+                buffer.put((byte) (0x80 | (c & 0x3f)));
+            }
+        }
+        for (int index = utf8Length; index < roundUp(utf8Length + 1, 4); index++) {
+            buffer.put((byte) 0x00);
+        }
+    }
 }
@@ -3,6 +3,9 @@ package ca.vijaysharma.apple.xpc;
 import ca.vijaysharma.apple.xpc.exceptions.XPCException;
 import ca.vijaysharma.apple.xpc.exceptions.XPCInvalidValueException;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
@@ -51,9 +54,11 @@ public class XPCWrapper {
         }
     }
 
-    private static final int WRAPPER_MAGIC = 0x29B00B92;
-    private static final int PAYLOAD_MAGIC = 0x42133742;
-    private static final int PAYLOAD_PROTOCOL_VERSION = 0x00000005;
+    static final int WRAPPER_MAGIC = 0x29B00B92;
+    static final int PAYLOAD_MAGIC = 0x42133742;
+    static final int PAYLOAD_PROTOCOL_VERSION = 0x00000005;
+    /** Magic, flags, payload length and message id; present even when there is no payload. */
+    static final int HEADER_LENGTH = 24;
 
     public final Set<XPCFlags> flags;
     public final long messageId;
@@ -66,6 +71,37 @@ public class XPCWrapper {
     }
 
     public static XPCWrapper from(byte[] bytes) throws XPCException {
+        return from(ByteBuffer.wrap(bytes), false);
+    }
+
+    /**
+     * Reads one frame starting at the buffer's position and advances the position past it.
+     * Heap and direct buffers are read in place, without copying them to an intermediate array.
+     */
+    public static XPCWrapper from(ByteBuffer bytes) throws XPCException {
+        return from(bytes, false);
+    }
+
+    /**
+     * Reads a wrapper whose payload is decoded lazily, see {@link XPCObject#lazy(byte[])}.
+     */
+    public static XPCWrapper lazy(byte[] bytes) throws XPCException {
+        return from(ByteBuffer.wrap(bytes), true, false);
+    }
+
+    /**
+     * Reads a wrapper whose payload is decoded lazily with data left in place, see
+     * {@link XPCObject#view(byte[])}.
+     */
+    public static XPCWrapper view(byte[] bytes) throws XPCException {
+        return from(ByteBuffer.wrap(bytes), true, true);
+    }
+
+    private static XPCWrapper from(ByteBuffer bytes, boolean lazy) throws XPCException {
+        return from(bytes, lazy, false);
+    }
+
+    private static XPCWrapper from(ByteBuffer bytes, boolean lazy, boolean views) throws XPCException {
         var reader = new XPCStreamReader(bytes);
         var magic = reader.readInt32();
         if (magic != WRAPPER_MAGIC) {
@@ -75,11 +111,34 @@ public class XPCWrapper {
         var flags = reader.readInt32();
         var length = reader.readInt64();
         if (length == 0) {
-            return new XPCWrapper(-1, XPCFlags.flags(flags), null);
+            reader.skip(Math.min(8, reader.remaining()));
+            bytes.position(bytes.position() + reader.position());
+            return withoutPayload(flags, reader.position(), lazy);
         }
-        var message = new XPCStreamReader(reader.readBytes((int)length + 8));
+        var message = new XPCStreamReader(reader.readSlice((int)length + 8));
         var messageId = message.readInt64();
-        var payload = new XPCStreamReader(message.readBytes((int)length));
+        var wrapper = from(messageId, flags, message.readSlice((int)length), lazy, views);
+        bytes.position(bytes.position() + reader.position());
+        return wrapper;
+    }
+
+    /**
+     * Decodes the payload section of a frame, everything after the message id. Every decoded
+     * frame with a payload, whichever way it was read, passes through here and is recorded as a
+     * {@link XPCFlightEvents.FrameDecode} event and reported to the {@link XPCMetricsListener},
+     * without the payload when it is lazy.
+     */
+    static XPCWrapper from(long messageId, int flags, ByteBuffer bytes, boolean lazy) throws XPCException {
+        return from(messageId, flags, bytes, lazy, false);
+    }
+
+    private static XPCWrapper from(long messageId, int flags, ByteBuffer bytes, boolean lazy, boolean views) throws XPCException {
+        var event = new XPCFlightEvents.FrameDecode();
+        event.begin();
+        var listener = XPCMetrics.listener();
+        var start = listener == null ? 0 : System.nanoTime();
+        var size = HEADER_LENGTH + bytes.remaining();
+        var payload = new XPCStreamReader(bytes);
         var payLoadMagic = payload.readInt32();
         if (payLoadMagic != PAYLOAD_MAGIC) {
             throw new XPCInvalidValueException("Unexpected XPC Payload magic value " + payLoadMagic);
@@ -89,41 +148,111 @@ public class XPCWrapper {
         if (protocolVersion != PAYLOAD_PROTOCOL_VERSION) {
             throw new XPCInvalidValueException("Unsupported XPC Payload protocol version " + protocolVersion);
         }
-        var obj = XPCObject.from(payload.readBytes((int)length - 8));
+        var obj = XPCDecoder.decode(payload, lazy, views);
         if (obj.type() != XPCType.XPC_DICTIONARY) {
             throw new XPCInvalidValueException("Expected XPC Dictionary as payload" + obj.type().name());
         }
+        if (listener != null) {
+            listener.record(XPCMetricsListener.Operation.FRAME_DECODE, lazy ? null : obj, size, System.nanoTime() - start);
+        }
+        XPCFlightEvents.commit(event, messageId, flags, size, lazy);
         return new XPCWrapper(messageId, XPCFlags.flags(flags), (XPCDictionary) obj);
     }
 
+    /**
+     * A decoded frame without a payload, recorded the same way as frames with one.
+     */
+    static XPCWrapper withoutPayload(int flags, int size, boolean lazy) {
+        var event = new XPCFlightEvents.FrameDecode();
+        event.begin();
+        var listener = XPCMetrics.listener();
+        var start = listener == null ? 0 : System.nanoTime();
+        var wrapper = new XPCWrapper(-1, XPCFlags.flags(flags), null);
+        if (listener != null) {
+            listener.record(XPCMetricsListener.Operation.FRAME_DECODE, null, size, System.nanoTime() - start);
+        }
+        XPCFlightEvents.commit(event, -1, flags, size, lazy);
+        return wrapper;
+    }
+
     public static byte[] flagsOnly(XPCFlags...flags) throws XPCException {
         return bytes(-1, null, flags);
     }
 
     public static byte[] bytes(long messageId, XPCDictionary payload, XPCFlags...flags) throws XPCException {
-        var writer = new XPCStreamWriter();
-        writer.writeInt32(WRAPPER_MAGIC);
-        writer.writeInt32(XPCFlags.or(flags));
+        var event = new XPCFlightEvents.FrameEncode();
+        event.begin();
+        var listener = XPCMetrics.listener();
+        var start = listener == null ? 0 : System.nanoTime();
+        var encoder = XPCEncoder.local();
+        var length = measure(encoder, payload);
+        var buffer = ByteBuffer.allocate(HEADER_LENGTH + length).order(ByteOrder.LITTLE_ENDIAN);
+        write(buffer, encoder, length, messageId, payload, flags);
+        if (listener != null) {
+            listener.record(XPCMetricsListener.Operation.FRAME_ENCODE, payload, buffer.capacity(), System.nanoTime() - start);
+        }
+        XPCFlightEvents.commit(event, messageId, flags, buffer.capacity());
+        return buffer.array();
+    }
 
-        if (payload == null) {
-            writer.writeInt64(0);
-            writer.writeInt64(0);
-            return writer.toByteArray();
+    /**
+     * Writes one frame at the buffer's position and advances the position past it. Throws
+     * {@link java.nio.BufferOverflowException}, leaving the buffer unchanged, when the frame does
+     * not fit in the remaining space.
+     */
+    public static void bytes(ByteBuffer target, long messageId, XPCDictionary payload, XPCFlags...flags) throws XPCException {
+        var event = new XPCFlightEvents.FrameEncode();
+        event.begin();
+        var listener = XPCMetrics.listener();
+        var start = listener == null ? 0 : System.nanoTime();
+        var encoder = XPCEncoder.local();
+        var length = measure(encoder, payload);
+        if (target.remaining() < HEADER_LENGTH + length) {
+            throw new BufferOverflowException();
         }
+        var buffer = target.slice().order(ByteOrder.LITTLE_ENDIAN);
+        write(buffer, encoder, length, messageId, payload, flags);
+        target.position(target.position() + buffer.position());
+        if (listener != null) {
+            listener.record(XPCMetricsListener.Operation.FRAME_ENCODE, payload, buffer.position(), System.nanoTime() - start);
+        }
+        XPCFlightEvents.commit(event, messageId, flags, buffer.position());
+    }
 
-        var payloadWriter = new XPCStreamWriter();
-        payloadWriter.writeInt32(PAYLOAD_MAGIC);
-        payloadWriter.writeInt32(PAYLOAD_PROTOCOL_VERSION);
-        payloadWriter.writeBytes(XPCObject.bytes(payload));
+    /**
+     * Number of bytes the frame for {@code payload} encodes to.
+     */
+    public static int size(XPCDictionary payload) throws XPCException {
+        return HEADER_LENGTH + measure(XPCEncoder.local(), payload);
+    }
 
-        var messageWriter = new XPCStreamWriter();
-        messageWriter.writeInt64(messageId);
-        messageWriter.writeBytes(payloadWriter.toByteArray());
+    /**
+     * Length of everything after the header, as written in the frame's length field.
+     */
+    static int measure(XPCEncoder encoder, XPCDictionary payload) throws XPCException {
+        return payload == null ? 0 : 8 + encoder.measure(payload);
+    }
 
-        var message = messageWriter.toByteArray();
-        writer.writeInt64(message.length - 8);
-        writer.writeBytes(message);
+    static void write(
+        ByteBuffer buffer,
+        XPCEncoder encoder,
+        int length,
+        long messageId,
+        XPCDictionary payload,
+        XPCFlags...flags
+    ) {
+        buffer.putInt(WRAPPER_MAGIC);
+        buffer.putInt(XPCFlags.or(flags));
+        buffer.putLong(length);
+
+        if (payload == null) {
+            buffer.putLong(0);
+            return;
+        }
 
-        return writer.toByteArray();
+        buffer.putLong(messageId);
+        buffer.putInt(PAYLOAD_MAGIC);
+        buffer.putInt(PAYLOAD_PROTOCOL_VERSION);
+        encoder.write(payload, buffer);
     }
 }
@@ -4,4 +4,8 @@ public class XPCException extends Exception {
     public XPCException(String message) {
         super(message);
     }
+
+    public XPCException(String message, Throwable cause) {
+        super(message, cause);
+    }
 }
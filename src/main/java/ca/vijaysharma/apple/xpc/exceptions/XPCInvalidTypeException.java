@@ -4,4 +4,8 @@ public class XPCInvalidTypeException extends XPCException {
     public XPCInvalidTypeException(String message) {
         super(message);
     }
+
+    public XPCInvalidTypeException(String message, Throwable cause) {
+        super(message, cause);
+    }
 }
@@ -4,4 +4,8 @@ public class XPCInvalidValueException extends XPCException{
     public XPCInvalidValueException(String message) {
         super(message);
     }
+
+    public XPCInvalidValueException(String message, Throwable cause) {
+        super(message, cause);
+    }
 }
@@ -0,0 +1,16 @@
+package ca.vijaysharma.apple.xpc.exceptions;
+
+/**
+ * Carries an {@link XPCException} out of APIs that cannot declare it, such as the
+ * {@link java.util.Map} and {@link java.util.List} views returned by lazy decoding.
+ */
+public class XPCUncheckedException extends RuntimeException {
+    public XPCUncheckedException(XPCException cause) {
+        super(cause.getMessage(), cause);
+    }
+
+    @Override
+    public synchronized XPCException getCause() {
+        return (XPCException) super.getCause();
+    }
+}
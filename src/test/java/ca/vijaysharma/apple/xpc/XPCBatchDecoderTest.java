@@ -0,0 +1,69 @@
+package ca.vijaysharma.apple.xpc;
+
+import ca.vijaysharma.apple.xpc.exceptions.XPCException;
+import ca.vijaysharma.apple.xpc.exceptions.XPCInvalidValueException;
+import ca.vijaysharma.apple.xpc.exceptions.XPCUncheckedException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static ca.vijaysharma.apple.xpc.XPCWrapper.XPCFlags.ALWAYS_SET;
+import static org.junit.jupiter.api.Assertions.*;
+
+class XPCBatchDecoderTest {
+    @Test
+    void returns_frames_in_input_order() throws XPCException {
+        var pool = new ForkJoinPool(4);
+        try {
+            var decoded = new XPCBatchDecoder(pool, 8).decode(frames(500));
+            assertEquals(500, decoded.size());
+            for (int index = 0; index < 500; index++) {
+                assertEquals(index, decoded.get(index).messageId);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void bounds_frames_in_flight() throws XPCException {
+        var pulled = new AtomicInteger();
+        var frames = frames(100);
+        var stream = new XPCBatchDecoder(ForkJoinPool.commonPool(), 5)
+            .decode(frames.stream().peek(frame -> pulled.incrementAndGet()));
+
+        var iterator = stream.iterator();
+        assertEquals(0, iterator.next().messageId);
+        assertEquals(5, pulled.get());
+
+        var remaining = 0;
+        while (iterator.hasNext()) {
+            assertEquals(++remaining, iterator.next().messageId);
+        }
+        assertEquals(99, remaining);
+    }
+
+    @Test
+    void reports_first_failure_in_order() throws XPCException {
+        var frames = frames(10);
+        frames.set(3, new byte[] { 0x00, 0x00, 0x00, 0x00 });
+        frames.set(7, new byte[] { 0x00, 0x00, 0x00, 0x00 });
+        var decoder = new XPCBatchDecoder();
+
+        assertThrows(XPCInvalidValueException.class, () -> decoder.decode(frames));
+        assertThrows(XPCUncheckedException.class, () -> decoder.decode(frames.stream()).toList());
+        assertEquals(3, decoder.decode(frames.stream()).limit(3).count());
+    }
+
+    private static List<byte[]> frames(int count) throws XPCException {
+        var frames = new ArrayList<byte[]>();
+        for (int index = 0; index < count; index++) {
+            frames.add(XPCWrapper.bytes(index, new XPCDictionary(Map.of("index", new XPCInt64(index))), ALWAYS_SET));
+        }
+        return frames;
+    }
+}
@@ -0,0 +1,80 @@
+package ca.vijaysharma.apple.xpc;
+
+import ca.vijaysharma.apple.xpc.exceptions.XPCException;
+import ca.vijaysharma.apple.xpc.exceptions.XPCInvalidValueException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static ca.vijaysharma.apple.xpc.XPCWrapper.XPCFlags.ALWAYS_SET;
+import static org.junit.jupiter.api.Assertions.*;
+
+class XPCCaptureReaderTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void indexes_frames_across_segments() throws IOException, XPCException {
+        var capture = capture(50);
+        var file = Files.write(this.directory.resolve("capture.bin"), capture);
+
+        for (var segmentLength : List.of(64L, 200L, (long) capture.length)) {
+            try (var reader = new XPCCaptureReader(file, segmentLength)) {
+                assertEquals(51, reader.size());
+                assertEquals(0, reader.offset(0));
+                for (int index = 0; index < 50; index++) {
+                    var frame = reader.get(index);
+                    assertEquals(index, frame.messageId);
+                    assertEquals(new XPCInt64(index), frame.payload.value().get("index"));
+                }
+                assertNull(reader.get(50).payload);
+                assertThrows(IndexOutOfBoundsException.class, () -> reader.get(51));
+            }
+        }
+    }
+
+    @Test
+    void streams_frames_in_parallel() throws IOException, XPCException {
+        var file = Files.write(this.directory.resolve("capture.bin"), capture(1000));
+        try (var reader = new XPCCaptureReader(file)) {
+            var ids = reader.stream().parallel().mapToLong(frame -> frame.messageId).toArray();
+            assertEquals(1001, ids.length);
+            for (int index = 0; index < 1000; index++) {
+                assertEquals(index, ids[index]);
+            }
+        }
+    }
+
+    @Test
+    void skips_truncated_final_frame() throws IOException, XPCException {
+        var capture = capture(3);
+        var file = Files.write(this.directory.resolve("capture.bin"), Arrays.copyOf(capture, capture.length - 30));
+        try (var reader = new XPCCaptureReader(file)) {
+            assertEquals(2, reader.size());
+        }
+    }
+
+    @Test
+    void rejects_corrupt_header() throws IOException, XPCException {
+        var capture = capture(2);
+        capture[0] = 0x00;
+        var file = Files.write(this.directory.resolve("capture.bin"), capture);
+        assertThrows(XPCInvalidValueException.class, () -> new XPCCaptureReader(file));
+    }
+
+    private static byte[] capture(int count) throws XPCException {
+        var stream = new ByteArrayOutputStream();
+        for (int index = 0; index < count; index++) {
+            stream.writeBytes(XPCWrapper.bytes(index, new XPCDictionary(Map.of("index", new XPCInt64(index))), ALWAYS_SET));
+        }
+        stream.writeBytes(XPCWrapper.flagsOnly(ALWAYS_SET));
+        return stream.toByteArray();
+    }
+}
@@ -0,0 +1,219 @@
+package ca.vijaysharma.apple.xpc;
+
+import ca.vijaysharma.apple.xpc.exceptions.XPCException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static ca.vijaysharma.apple.xpc.XPCWrapper.XPCFlags.ALWAYS_SET;
+import static org.junit.jupiter.api.Assertions.*;
+
+class XPCCaptureWriterTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void appends_from_many_threads() throws Exception {
+        var file = this.directory.resolve("capture.bin");
+        var futures = new ArrayList<CompletableFuture<Long>>();
+        try (var writer = new XPCCaptureWriter(file, Duration.ofMillis(5))) {
+            var executor = Executors.newFixedThreadPool(4);
+            var tasks = new ArrayList<Future<List<CompletableFuture<Long>>>>();
+            for (int thread = 0; thread < 4; thread++) {
+                var base = thread * 250;
+                tasks.add(executor.submit(() -> {
+                    var appended = new ArrayList<CompletableFuture<Long>>();
+                    for (int index = base; index < base + 250; index++) {
+                        appended.add(writer.append(index, new XPCDictionary(Map.of("index", new XPCInt64(index))), ALWAYS_SET));
+                    }
+                    return appended;
+                }));
+            }
+            for (var task : tasks) {
+                futures.addAll(task.get());
+            }
+            executor.shutdown();
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+        }
+
+        try (var reader = new XPCCaptureReader(file)) {
+            assertEquals(1000, reader.size());
+            var ids = reader.stream().map(frame -> frame.messageId).collect(Collectors.toSet());
+            assertEquals(1000, ids.size());
+
+            var offsets = new HashSet<Long>();
+            for (var future : futures) {
+                offsets.add(future.get());
+            }
+            for (int index = 0; index < reader.size(); index++) {
+                assertTrue(offsets.contains(reader.offset(index)));
+            }
+        }
+    }
+
+    @Test
+    void appends_to_existing_file() throws IOException, XPCException, ExecutionException, InterruptedException {
+        var file = this.directory.resolve("capture.bin");
+        try (var writer = new XPCCaptureWriter(file)) {
+            writer.append(1, new XPCDictionary(Map.of()));
+        }
+        long offset;
+        try (var writer = new XPCCaptureWriter(file, Duration.ZERO)) {
+            offset = writer.append(2, new XPCDictionary(Map.of())).get();
+        }
+        try (var reader = new XPCCaptureReader(file)) {
+            assertEquals(2, reader.size());
+            assertEquals(reader.offset(1), offset);
+            assertEquals(2, reader.get(1).messageId);
+        }
+    }
+
+    @Test
+    void rejects_append_after_close() throws IOException {
+        var writer = new XPCCaptureWriter(this.directory.resolve("capture.bin"));
+        writer.close();
+        assertThrows(IllegalStateException.class, () -> writer.append(new byte[0]));
+    }
+
+    @Test
+    void fails_blocked_appends_when_disk_fails() throws Exception {
+        var channel = new FailingChannel();
+        var writer = new XPCCaptureWriter(channel, null, 4);
+        var executor = Executors.newFixedThreadPool(4);
+        var tasks = new ArrayList<Future<List<CompletableFuture<Long>>>>();
+        for (int thread = 0; thread < 4; thread++) {
+            tasks.add(executor.submit(() -> {
+                var appended = new ArrayList<CompletableFuture<Long>>();
+                for (int index = 0; index < 10; index++) {
+                    appended.add(writer.append(new byte[8]));
+                }
+                return appended;
+            }));
+        }
+        assertTrue(channel.writing.await(5, TimeUnit.SECONDS));
+        // the writer is stuck in its first write and the queue fills up behind it
+        Thread.sleep(100);
+        channel.release.countDown();
+
+        for (var task : tasks) {
+            for (var future : task.get(5, TimeUnit.SECONDS)) {
+                var error = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+                assertInstanceOf(IOException.class, error.getCause());
+            }
+        }
+        executor.shutdown();
+        assertThrows(IOException.class, writer::close);
+    }
+
+    private static class FailingChannel extends FileChannel {
+        final CountDownLatch writing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public long write(ByteBuffer[] sources, int offset, int length) throws IOException {
+            this.writing.countDown();
+            try {
+                this.release.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            throw new IOException("Disk failed");
+        }
+
+        @Override
+        public int write(ByteBuffer source) throws IOException {
+            return (int) write(new ByteBuffer[]{source}, 0, 1);
+        }
+
+        @Override
+        public long size() {
+            return 0;
+        }
+
+        @Override
+        public void force(boolean metaData) {}
+
+        @Override
+        protected void implCloseChannel() {}
+
+        @Override
+        public int read(ByteBuffer destination) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long read(ByteBuffer[] destinations, int offset, int length) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long position() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FileChannel truncate(long size) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel source, long position, long count) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int read(ByteBuffer destination, long position) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int write(ByteBuffer source, long position) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package ca.vijaysharma.apple.xpc;
+
+import ca.vijaysharma.apple.xpc.exceptions.XPCException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ServerSocketChannel;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class XPCClientTest {
+    private static final InetSocketAddress LOOPBACK = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+
+    @Test
+    void correlates_pipelined_replies() throws Exception {
+        XPCServer.Handler handler = request -> new XPCDictionary(Map.of("echo", request.payload.value().get("value")));
+        try (var server = new XPCServer(LOOPBACK, handler).start();
+             var client = new XPCClient(server.address())) {
+            var futures = new ArrayList<CompletableFuture<XPCWrapper>>();
+            for (int index = 0; index < 200; index++) {
+                futures.add(client.request(new XPCDictionary(Map.of("value", new XPCInt64(index)))));
+            }
+            for (int index = 0; index < 200; index++) {
+                var reply = futures.get(index).get();
+                assertEquals(new XPCInt64(index), reply.payload.value().get("echo"));
+            }
+            assertEquals(0, client.outstanding());
+        }
+    }
+
+    @Test
+    void times_out_unanswered_requests() throws IOException, XPCException {
+        try (var server = new XPCServer(LOOPBACK, request -> null).start();
+             var client = new XPCClient(server.address())) {
+            var future = client.request(new XPCDictionary(Map.of()), Duration.ofMillis(50));
+            var error = assertThrows(ExecutionException.class, future::get);
+            assertInstanceOf(TimeoutException.class, error.getCause());
+            assertEquals(0, client.outstanding());
+        }
+    }
+
+    @Test
+    void fails_outstanding_requests_on_close() throws IOException, XPCException {
+        try (var server = new XPCServer(LOOPBACK, request -> null).start()) {
+            var client = new XPCClient(server.address());
+            var future = client.request(new XPCDictionary(Map.of()));
+            client.close();
+            var error = assertThrows(ExecutionException.class, future::get);
+            assertInstanceOf(IOException.class, error.getCause());
+            assertTrue(client.request(new XPCDictionary(Map.of())).isCompletedExceptionally());
+        }
+    }
+
+    @Test
+    void fails_outstanding_requests_on_corrupt_frame() throws Exception {
+        try (var server = ServerSocketChannel.open().bind(LOOPBACK)) {
+            var client = new XPCClient(server.getLocalAddress());
+            var future = client.request(new XPCDictionary(Map.of()));
+            try (var peer = server.accept()) {
+                // a reply whose 4 byte payload stops right after the payload magic
+                var frame = ByteBuffer.allocate(XPCWrapper.HEADER_LENGTH + 4).order(ByteOrder.LITTLE_ENDIAN)
+                    .putInt(XPCWrapper.WRAPPER_MAGIC)
+                    .putInt(XPCWrapper.XPCFlags.or(XPCWrapper.XPCFlags.ALWAYS_SET, XPCWrapper.XPCFlags.REPLY))
+                    .putLong(4)
+                    .putLong(1)
+                    .putInt(XPCWrapper.PAYLOAD_MAGIC)
+                    .flip();
+                peer.write(frame);
+
+                var error = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+                assertInstanceOf(IOException.class, error.getCause());
+                assertInstanceOf(XPCException.class, error.getCause().getCause());
+                assertTrue(client.request(new XPCDictionary(Map.of())).isCompletedExceptionally());
+            } finally {
+                client.close();
+            }
+        }
+    }
+}
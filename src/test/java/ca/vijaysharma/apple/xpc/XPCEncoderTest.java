@@ -0,0 +1,73 @@
+package ca.vijaysharma.apple.xpc;
+
+import ca.vijaysharma.apple.xpc.exceptions.XPCException;
+import ca.vijaysharma.apple.xpc.exceptions.XPCInvalidValueException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class XPCEncoderTest {
+    @Test
+    void can_write_nested_containers() throws XPCException {
+        assertArrayEquals(new byte[]{
+            (byte) 0x00, (byte) 0xf0, (byte) 0x00, (byte) 0x00,
+            (byte) 0x20, (byte) 0x00, (byte) 0x00, (byte) 0x00,
+            (byte) 0x01, (byte) 0x00, (byte) 0x00, (byte) 0x00,
+            (byte) 0x61, (byte) 0x00, (byte) 0x00, (byte) 0x00,
+            (byte) 0x00, (byte) 0xe0, (byte) 0x00, (byte) 0x00,
+            (byte) 0x10, (byte) 0x00, (byte) 0x00, (byte) 0x00,
+            (byte) 0x01, (byte) 0x00, (byte) 0x00, (byte) 0x00,
+            (byte) 0x00, (byte) 0x30, (byte) 0x00, (byte) 0x00,
+            (byte) 0x01, (byte) 0x00, (byte) 0x00, (byte) 0x00,
+            (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00
+        }, XPCObject.bytes(new XPCDictionary(
+            Map.of("a", new XPCArray(List.of(new XPCInt64(1))))
+        )));
+    }
+
+    @Test
+    void measures_exact_size_of_deep_tree() throws XPCException {
+        var object = deep(6);
+        var encoder = new XPCEncoder();
+        var size = encoder.measure(object);
+        var bytes = XPCObject.bytes(object);
+        assertEquals(size, bytes.length);
+        assertEquals(object, XPCObject.from(bytes));
+    }
+
+    @Test
+    void wrapper_contains_encoded_payload() throws XPCException {
+        var payload = deep(3);
+        var wrapper = XPCWrapper.bytes(7, payload, XPCWrapper.XPCFlags.ALWAYS_SET);
+        var object = XPCObject.bytes(payload);
+        assertArrayEquals(object, Arrays.copyOfRange(wrapper, 32, wrapper.length));
+        assertEquals(payload, XPCWrapper.from(wrapper).payload);
+    }
+
+    @Test
+    void throws_on_negative_uint64() {
+        assertThrowsExactly(
+            XPCInvalidValueException.class,
+            () -> XPCObject.bytes(new XPCArray(List.of(new XPCUInt64(-1))))
+        );
+    }
+
+    private static XPCDictionary deep(int depth) {
+        XPCObject child = new XPCString("leaf");
+        for (int level = 0; level < depth; level++) {
+            child = new XPCDictionary(Map.of(
+                "level", new XPCInt64(level),
+                "id", new XPCUUID(new UUID(level, level)),
+                "flag", new XPCBool(level % 2 == 0),
+                "ratio", new XPCDouble(level / 3.0),
+                "items", new XPCArray(List.of(new XPCNull(), new XPCString("item" + level), child))
+            ));
+        }
+        return (XPCDictionary) child;
+    }
+}
@@ -0,0 +1,92 @@
+package ca.vijaysharma.apple.xpc;
+
+import ca.vijaysharma.apple.xpc.exceptions.XPCException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static ca.vijaysharma.apple.xpc.XPCEventReader.XPCEvent.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class XPCEventReaderTest {
+    @Test
+    void can_read_dictionary_events() throws XPCException {
+        byte[] bytes = {
+            (byte) 0x00, (byte) 0xf0, (byte) 0x00, (byte) 0x00,
+            (byte) 0x1c, (byte) 0x00, (byte) 0x00, (byte) 0x00,
+            (byte) 0x01, (byte) 0x00, (byte) 0x00, (byte) 0x00,
+            (byte) 0x68, (byte) 0x65, (byte) 0x6C, (byte) 0x6C,
+            (byte) 0x6F, (byte) 0x00, (byte) 0x00, (byte) 0x00,
+            (byte) 0x00, (byte) 0x90, (byte) 0x00, (byte) 0x00,
+            (byte) 0x06, (byte) 0x00, (byte) 0x00, (byte) 0x00,
+            (byte) 0x77, (byte) 0x6F, (byte) 0x72, (byte) 0x6C,
+            (byte) 0x64, (byte) 0x00, (byte) 0x00, (byte) 0x00
+        };
+
+        var reader = new XPCEventReader(bytes);
+        assertEquals(START_DICTIONARY, reader.next());
+        assertEquals(1, reader.count());
+        assertEquals(KEY, reader.next());
+        assertEquals("hello", reader.key());
+        assertEquals(STRING, reader.next());
+        assertEquals("world", reader.stringValue());
+        assertEquals(END_DICTIONARY, reader.next());
+        assertFalse(reader.hasNext());
+    }
+
+    @Test
+    void can_read_nested_events() throws XPCException {
+        var uuid = java.util.UUID.randomUUID();
+        var bytes = XPCObject.bytes(new XPCArray(List.of(
+            new XPCInt64(-4),
+            new XPCArray(List.of(new XPCBool(true), new XPCDouble(1.5))),
+            new XPCUUID(uuid),
+            new XPCData(new byte[] { 0x01, 0x02, 0x03 }),
+            new XPCNull()
+        )));
+
+        var events = new ArrayList<XPCEventReader.XPCEvent>();
+        var reader = new XPCEventReader(bytes);
+        while (reader.hasNext()) {
+            var event = reader.next();
+            events.add(event);
+            switch (event) {
+                case INT64 -> assertEquals(-4, reader.longValue());
+                case BOOL -> assertTrue(reader.boolValue());
+                case DOUBLE -> assertEquals(1.5, reader.doubleValue());
+                case UUID -> assertEquals(uuid, reader.uuidValue());
+                case DATA -> assertArrayEquals(new byte[] { 0x01, 0x02, 0x03 }, reader.dataValue());
+                default -> {}
+            }
+        }
+        assertEquals(List.of(
+            START_ARRAY, INT64, START_ARRAY, BOOL, DOUBLE, END_ARRAY, UUID, DATA, NULL, END_ARRAY
+        ), events);
+    }
+
+    @Test
+    void can_skip_values_and_containers() throws XPCException {
+        var bytes = XPCObject.bytes(new XPCDictionary(Map.of(
+            "skipped", new XPCArray(List.of(new XPCString("a"), new XPCString("b"))),
+            "kept", new XPCInt64(3)
+        )));
+
+        var reader = new XPCEventReader(bytes);
+        assertEquals(START_DICTIONARY, reader.next());
+        var seen = new ArrayList<String>();
+        while (reader.next() == KEY) {
+            seen.add(reader.key());
+            if (reader.key().equals("skipped")) {
+                reader.skip();
+                continue;
+            }
+            assertEquals(INT64, reader.next());
+            assertEquals(3, reader.longValue());
+        }
+        assertEquals(END_DICTIONARY, reader.event());
+        assertEquals(2, seen.size());
+        assertFalse(reader.hasNext());
+    }
+}
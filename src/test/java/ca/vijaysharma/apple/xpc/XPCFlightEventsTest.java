@@ -0,0 +1,63 @@
+package ca.vijaysharma.apple.xpc;
+
+import ca.vijaysharma.apple.xpc.exceptions.XPCException;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static ca.vijaysharma.apple.xpc.XPCWrapper.XPCFlags.ALWAYS_SET;
+import static ca.vijaysharma.apple.xpc.XPCWrapper.XPCFlags.WANTING_REPLY;
+import static org.junit.jupiter.api.Assertions.*;
+
+class XPCFlightEventsTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void records_codec_events() throws IOException, XPCException {
+        var payload = new XPCDictionary(Map.of("hello", new XPCString("world")));
+        byte[] frame;
+        List<RecordedEvent> events;
+        try (var recording = new Recording()) {
+            for (var name : List.of("FrameDecode", "FrameEncode", "ObjectDecode", "ObjectEncode")) {
+                recording.enable("ca.vijaysharma.apple.xpc." + name).withThreshold(Duration.ZERO);
+            }
+            recording.start();
+            frame = XPCWrapper.bytes(7, payload, ALWAYS_SET, WANTING_REPLY);
+            XPCWrapper.from(frame);
+            XPCObject.from(XPCObject.bytes(payload));
+            recording.stop();
+
+            var file = this.directory.resolve("recording.jfr");
+            recording.dump(file);
+            events = RecordingFile.readAllEvents(file);
+        }
+
+        var encoded = single(events, "ca.vijaysharma.apple.xpc.FrameEncode");
+        assertEquals(7, encoded.getLong("messageId"));
+        assertEquals(XPCWrapper.XPCFlags.or(ALWAYS_SET, WANTING_REPLY), encoded.getInt("flags"));
+        assertEquals(frame.length, encoded.getLong("size"));
+
+        var decoded = single(events, "ca.vijaysharma.apple.xpc.FrameDecode");
+        assertEquals(7, decoded.getLong("messageId"));
+        assertEquals(frame.length, decoded.getLong("size"));
+        assertFalse(decoded.getBoolean("lazy"));
+
+        assertEquals("XPC_DICTIONARY", single(events, "ca.vijaysharma.apple.xpc.ObjectDecode").getString("type"));
+        assertEquals(XPCObject.size(payload), single(events, "ca.vijaysharma.apple.xpc.ObjectEncode").getLong("size"));
+    }
+
+    private static RecordedEvent single(List<RecordedEvent> events, String name) {
+        var matching = events.stream().filter(event -> event.getEventType().getName().equals(name)).toList();
+        assertEquals(1, matching.size(), name);
+        return matching.get(0);
+    }
+}
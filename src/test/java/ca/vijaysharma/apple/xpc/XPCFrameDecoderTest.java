@@ -0,0 +1,77 @@
+package ca.vijaysharma.apple.xpc;
+
+import ca.vijaysharma.apple.xpc.exceptions.XPCException;
+import ca.vijaysharma.apple.xpc.exceptions.XPCInvalidValueException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static ca.vijaysharma.apple.xpc.XPCWrapper.XPCFlags.ALWAYS_SET;
+import static ca.vijaysharma.apple.xpc.XPCWrapper.XPCFlags.REPLY;
+import static org.junit.jupiter.api.Assertions.*;
+
+class XPCFrameDecoderTest {
+    @Test
+    void decodes_frames_split_across_chunks() throws XPCException {
+        var stream = new ByteArrayOutputStream();
+        stream.writeBytes(XPCWrapper.bytes(1, new XPCDictionary(Map.of("hello", new XPCString("world"))), ALWAYS_SET));
+        stream.writeBytes(XPCWrapper.flagsOnly(ALWAYS_SET));
+        stream.writeBytes(XPCWrapper.bytes(2, new XPCDictionary(Map.of("count", new XPCInt64(3))), ALWAYS_SET, REPLY));
+        var bytes = stream.toByteArray();
+
+        for (int chunkSize = 1; chunkSize <= bytes.length; chunkSize += 7) {
+            var decoder = new XPCFrameDecoder();
+            var frames = new ArrayList<XPCWrapper>();
+            for (int offset = 0; offset < bytes.length; offset += chunkSize) {
+                var length = Math.min(chunkSize, bytes.length - offset);
+                frames.addAll(decoder.decode(ByteBuffer.wrap(bytes, offset, length)));
+            }
+
+            assertFalse(decoder.hasPartialFrame());
+            assertEquals(3, frames.size());
+            assertEquals(1, frames.get(0).messageId);
+            assertEquals(new XPCString("world"), frames.get(0).payload.value().get("hello"));
+            assertEquals(-1, frames.get(1).messageId);
+            assertNull(frames.get(1).payload);
+            assertEquals(2, frames.get(2).messageId);
+            assertTrue(frames.get(2).flags.contains(REPLY));
+        }
+    }
+
+    @Test
+    void leaves_bytes_after_frame_in_chunk() throws XPCException {
+        var frame = XPCWrapper.bytes(4, new XPCDictionary(Map.of()), ALWAYS_SET);
+        var chunk = ByteBuffer.allocate(frame.length + 5).put(frame).put(new byte[5]).flip();
+        var decoder = new XPCFrameDecoder();
+        assertEquals(4, decoder.next(chunk).messageId);
+        assertEquals(5, chunk.remaining());
+    }
+
+    @Test
+    void keeps_partial_frame() throws XPCException {
+        var frame = XPCWrapper.bytes(4, new XPCDictionary(Map.of()), ALWAYS_SET);
+        var decoder = new XPCFrameDecoder();
+        assertEquals(List.of(), decoder.decode(ByteBuffer.wrap(frame, 0, frame.length - 1)));
+        assertTrue(decoder.hasPartialFrame());
+        assertEquals(1, decoder.decode(ByteBuffer.wrap(frame, frame.length - 1, 1)).size());
+    }
+
+    @Test
+    void rejects_invalid_headers() throws XPCException {
+        var frame = XPCWrapper.bytes(4, new XPCDictionary(Map.of("a", new XPCString("b"))), ALWAYS_SET);
+        assertThrowsExactly(
+            XPCInvalidValueException.class,
+            () -> new XPCFrameDecoder(8).decode(ByteBuffer.wrap(frame))
+        );
+
+        frame[0] = 0;
+        assertThrowsExactly(
+            XPCInvalidValueException.class,
+            () -> new XPCFrameDecoder().decode(ByteBuffer.wrap(frame))
+        );
+    }
+}
@@ -0,0 +1,101 @@
+package ca.vijaysharma.apple.xpc;
+
+import ca.vijaysharma.apple.xpc.exceptions.XPCException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static ca.vijaysharma.apple.xpc.XPCWrapper.XPCFlags.ALWAYS_SET;
+import static ca.vijaysharma.apple.xpc.XPCWrapper.XPCFlags.WANTING_REPLY;
+import static org.junit.jupiter.api.Assertions.*;
+
+class XPCGeneratorTest {
+    @Test
+    void writes_same_bytes_as_encoder() throws IOException, XPCException {
+        var uuid = new UUID(1, 2);
+        var date = Instant.ofEpochSecond(1694969145);
+        var map = new LinkedHashMap<String, XPCObject>();
+        map.put("name", new XPCString("hello"));
+        map.put("values", new XPCArray(List.of(
+            new XPCInt64(-1),
+            new XPCUInt64(2),
+            new XPCDouble(1.5),
+            new XPCBool(true),
+            new XPCNull()
+        )));
+        map.put("id", new XPCUUID(uuid));
+        map.put("when", new XPCDate(date));
+        map.put("blob", new XPCData(new byte[] { 1, 2, 3 }));
+        map.put("nested", new XPCDictionary(Map.of("a", new XPCString("b"))));
+
+        var out = new ByteArrayOutputStream();
+        try (var generator = new XPCGenerator(out)) {
+            generator.startDictionary()
+                .key("name").string("hello")
+                .key("values").startArray()
+                    .int64(-1).uint64(2).doubleValue(1.5).bool(true).nullValue()
+                .endArray()
+                .key("id").uuid(uuid)
+                .key("when").date(date)
+                .key("blob").data(new byte[] { 1, 2, 3 })
+                .key("nested").value(new XPCDictionary(Map.of("a", new XPCString("b"))))
+                .endDictionary();
+        }
+
+        assertArrayEquals(XPCObject.bytes(new XPCDictionary(map)), out.toByteArray());
+    }
+
+    @Test
+    void writes_same_bytes_as_wrapper() throws IOException, XPCException {
+        var out = new ByteArrayOutputStream();
+        try (var generator = new XPCGenerator(out)) {
+            generator.startWrapper(7, ALWAYS_SET, WANTING_REPLY)
+                .startDictionary().key("hello").string("world").endDictionary()
+                .endWrapper()
+                .flagsOnly(ALWAYS_SET);
+        }
+
+        var payload = new XPCDictionary(Map.of("hello", new XPCString("world")));
+        var expected = new ByteArrayOutputStream();
+        expected.writeBytes(XPCWrapper.bytes(7, payload, ALWAYS_SET, WANTING_REPLY));
+        expected.writeBytes(XPCWrapper.flagsOnly(ALWAYS_SET));
+        assertArrayEquals(expected.toByteArray(), out.toByteArray());
+    }
+
+    @Test
+    void patches_lengths_of_flushed_containers(@TempDir Path directory) throws IOException, XPCException {
+        var path = directory.resolve("large.xpc");
+        var items = new ArrayList<XPCObject>();
+        try (var generator = new XPCGenerator(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE))) {
+            generator.startWrapper(1, ALWAYS_SET).startDictionary().key("files").startArray();
+            for (int index = 0; index < 20_000; index++) {
+                generator.string("file-" + index);
+                items.add(new XPCString("file-" + index));
+            }
+            generator.endArray().endDictionary().endWrapper();
+        }
+
+        var payload = new XPCDictionary(Map.of("files", new XPCArray(items)));
+        assertArrayEquals(XPCWrapper.bytes(1, payload, ALWAYS_SET), Files.readAllBytes(path));
+    }
+
+    @Test
+    void rejects_values_without_keys() {
+        var generator = new XPCGenerator(new ByteArrayOutputStream());
+        generator.startDictionary();
+        assertThrowsExactly(IllegalStateException.class, () -> generator.int64(1));
+        assertThrowsExactly(IllegalStateException.class, generator::endArray);
+    }
+}
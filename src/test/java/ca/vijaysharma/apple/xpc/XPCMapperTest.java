@@ -0,0 +1,108 @@
+package ca.vijaysharma.apple.xpc;
+
+import ca.vijaysharma.apple.xpc.exceptions.XPCException;
+import ca.vijaysharma.apple.xpc.exceptions.XPCInvalidTypeException;
+import ca.vijaysharma.apple.xpc.exceptions.XPCInvalidValueException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class XPCMapperTest {
+    enum Kind { PHONE, WATCH }
+
+    record Service(String name, int port) {}
+
+    record Device(
+        String name,
+        long uptime,
+        boolean online,
+        double load,
+        UUID id,
+        Instant seen,
+        Kind kind,
+        List<Service> services,
+        Map<String, Long> counters,
+        XPCObject extra,
+        String missing
+    ) {}
+
+    record Blob(byte[] value) {}
+
+    record Node(String name, List<Node> children) {}
+
+    record Narrow(int value) {}
+
+    record Unsupported(Object value) {}
+
+    private static final Device DEVICE = new Device(
+        "iPhone",
+        42,
+        true,
+        0.5,
+        new UUID(1, 2),
+        Instant.ofEpochSecond(1694969145),
+        Kind.PHONE,
+        List.of(new Service("sshd", 22)),
+        Map.of("rx", 10L),
+        new XPCArray(List.of(new XPCBool(false))),
+        null
+    );
+
+    @Test
+    void writes_record_as_dictionary() throws XPCException {
+        var object = XPCObject.from(XPCMapper.write(DEVICE));
+        var expected = new XPCDictionary(Map.ofEntries(
+            Map.entry("name", new XPCString("iPhone")),
+            Map.entry("uptime", new XPCInt64(42)),
+            Map.entry("online", new XPCBool(true)),
+            Map.entry("load", new XPCDouble(0.5)),
+            Map.entry("id", new XPCUUID(new UUID(1, 2))),
+            Map.entry("seen", new XPCDate(Instant.ofEpochSecond(1694969145))),
+            Map.entry("kind", new XPCString("PHONE")),
+            Map.entry("services", new XPCArray(List.of(new XPCDictionary(Map.of(
+                "name", new XPCString("sshd"),
+                "port", new XPCInt64(22)
+            ))))),
+            Map.entry("counters", new XPCDictionary(Map.of("rx", new XPCInt64(10)))),
+            Map.entry("extra", new XPCArray(List.of(new XPCBool(false)))),
+            Map.entry("missing", new XPCNull())
+        ));
+        assertEquals(expected, object);
+    }
+
+    @Test
+    void reads_written_record() throws XPCException {
+        assertEquals(DEVICE, XPCMapper.read(XPCMapper.write(DEVICE), Device.class));
+
+        var tree = new Node("root", List.of(new Node("leaf", List.of())));
+        assertEquals(tree, XPCMapper.read(XPCMapper.write(tree), Node.class));
+
+        var blob = XPCMapper.read(XPCMapper.write(new Blob(new byte[] { 1, 2, 3 })), Blob.class);
+        assertArrayEquals(new byte[] { 1, 2, 3 }, blob.value());
+    }
+
+    @Test
+    void reads_dictionary_with_unknown_and_missing_keys() throws XPCException {
+        var bytes = XPCObject.bytes(new XPCDictionary(Map.of(
+            "port", new XPCInt64(8080),
+            "unknown", new XPCArray(List.of(new XPCString("skipped")))
+        )));
+        assertEquals(new Service(null, 8080), XPCMapper.read(bytes, Service.class));
+    }
+
+    @Test
+    void rejects_invalid_values() throws XPCException {
+        var overflow = XPCObject.bytes(new XPCDictionary(Map.of("value", new XPCInt64(Long.MAX_VALUE))));
+        assertThrowsExactly(XPCInvalidValueException.class, () -> XPCMapper.read(overflow, Narrow.class));
+
+        var mismatch = XPCObject.bytes(new XPCDictionary(Map.of("value", new XPCString("1"))));
+        assertThrowsExactly(XPCInvalidTypeException.class, () -> XPCMapper.read(mismatch, Narrow.class));
+
+        assertThrowsExactly(XPCInvalidTypeException.class, () -> XPCMapper.write(new Unsupported("value")));
+    }
+}
@@ -0,0 +1,149 @@
+package ca.vijaysharma.apple.xpc;
+
+import ca.vijaysharma.apple.xpc.exceptions.XPCException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static ca.vijaysharma.apple.xpc.XPCWrapper.XPCFlags.ALWAYS_SET;
+import static org.junit.jupiter.api.Assertions.*;
+
+class XPCMetricsTest {
+    @AfterEach
+    void disable() {
+        XPCMetrics.setListener(null);
+    }
+
+    @Test
+    void reports_operations_to_listener() throws XPCException {
+        var operations = new ArrayList<XPCMetricsListener.Operation>();
+        var sizes = new ArrayList<Integer>();
+        XPCMetrics.setListener((operation, value, bytes, nanos) -> {
+            operations.add(operation);
+            sizes.add(bytes);
+        });
+
+        var object = new XPCDictionary(Map.of("hello", new XPCString("world")));
+        var bytes = XPCObject.bytes(object);
+        XPCObject.from(bytes);
+        var frame = XPCWrapper.bytes(1, object, ALWAYS_SET);
+        XPCWrapper.from(frame);
+
+        assertEquals(List.of(
+            XPCMetricsListener.Operation.OBJECT_ENCODE,
+            XPCMetricsListener.Operation.OBJECT_DECODE,
+            XPCMetricsListener.Operation.FRAME_ENCODE,
+            XPCMetricsListener.Operation.FRAME_DECODE
+        ), operations);
+        assertEquals(List.of(bytes.length, bytes.length, frame.length, frame.length), sizes);
+    }
+
+    @Test
+    void reports_lazy_decodes_without_value() throws XPCException {
+        var object = new XPCDictionary(Map.of("hello", new XPCString("world")));
+        var bytes = XPCObject.bytes(object);
+        var frame = XPCWrapper.bytes(1, object, ALWAYS_SET);
+        var operations = new ArrayList<XPCMetricsListener.Operation>();
+        var sizes = new ArrayList<Integer>();
+        var values = new ArrayList<XPCObject>();
+        XPCMetrics.setListener((operation, value, size, nanos) -> {
+            operations.add(operation);
+            sizes.add(size);
+            values.add(value);
+        });
+
+        XPCObject.lazy(bytes);
+        XPCObject.view(bytes);
+        XPCWrapper.lazy(frame);
+
+        assertEquals(List.of(
+            XPCMetricsListener.Operation.OBJECT_DECODE,
+            XPCMetricsListener.Operation.OBJECT_DECODE,
+            XPCMetricsListener.Operation.FRAME_DECODE
+        ), operations);
+        assertEquals(List.of(bytes.length, bytes.length, frame.length), sizes);
+        assertTrue(values.stream().allMatch(Objects::isNull));
+    }
+
+    @Test
+    void reports_frames_read_incrementally() throws XPCException {
+        var operations = new ArrayList<XPCMetricsListener.Operation>();
+        var frame = XPCWrapper.bytes(1, new XPCDictionary(Map.of()), ALWAYS_SET);
+        var flagsOnly = XPCWrapper.flagsOnly(ALWAYS_SET);
+        XPCMetrics.setListener((operation, value, bytes, nanos) -> operations.add(operation));
+
+        var decoder = new XPCFrameDecoder();
+        decoder.decode(ByteBuffer.wrap(frame));
+        decoder.decode(ByteBuffer.wrap(flagsOnly));
+
+        assertEquals(List.of(XPCMetricsListener.Operation.FRAME_DECODE, XPCMetricsListener.Operation.FRAME_DECODE), operations);
+    }
+
+    @Test
+    void reports_stream_writer_encodes() throws XPCException {
+        var object = new XPCDictionary(Map.of("hello", new XPCString("world")));
+        var frame = XPCWrapper.bytes(1, object, ALWAYS_SET);
+        var operations = new ArrayList<XPCMetricsListener.Operation>();
+        var sizes = new ArrayList<Integer>();
+        XPCMetrics.setListener((operation, value, bytes, nanos) -> {
+            operations.add(operation);
+            sizes.add(bytes);
+        });
+
+        try (var writer = new XPCStreamWriter()) {
+            writer.writeObject(object);
+            writer.writeWrapper(1, object, ALWAYS_SET);
+        }
+
+        assertEquals(List.of(XPCMetricsListener.Operation.OBJECT_ENCODE, XPCMetricsListener.Operation.FRAME_ENCODE), operations);
+        assertEquals(List.of(XPCObject.size(object), frame.length), sizes);
+    }
+
+    @Test
+    void scales_sampled_type_counts() throws XPCException {
+        var metrics = new XPCMetrics(4);
+        var object = new XPCDictionary(Map.of("value", new XPCInt64(1)));
+        for (int index = 0; index < 100; index++) {
+            metrics.record(XPCMetricsListener.Operation.OBJECT_DECODE, object, XPCObject.size(object), 0);
+        }
+        assertEquals(100, metrics.getObjectsDecoded());
+        assertEquals(0, metrics.getTypeCounts().get("XPC_INT64") % 4);
+        assertEquals(metrics.getTypeCounts().get("XPC_INT64"), metrics.getTypeCounts().get("XPC_DICTIONARY"));
+    }
+
+    @Test
+    void collects_counts_and_histograms() throws XPCException, JMException {
+        var metrics = new XPCMetrics(1);
+        XPCMetrics.setListener(metrics);
+        var object = new XPCDictionary(Map.of(
+            "samples", new XPCArray(new XPCInt64Array(new long[] { 1, 2, 3 })),
+            "nested", new XPCDictionary(Map.of("name", new XPCString("value")))
+        ));
+        XPCObject.from(XPCObject.bytes(object));
+
+        assertEquals(1, metrics.getObjectsEncoded());
+        assertEquals(1, metrics.getObjectsDecoded());
+        assertEquals(2L * XPCObject.size(object), metrics.getBytesDecoded() + metrics.getBytesEncoded());
+        assertEquals(6L, metrics.getTypeCounts().get("XPC_INT64"));
+        assertEquals(4L, metrics.getTypeCounts().get("XPC_DICTIONARY"));
+        assertEquals(2, metrics.getDepthHistogram()[2]);
+
+        metrics.register();
+        try {
+            var server = ManagementFactory.getPlatformMBeanServer();
+            assertEquals(1L, server.getAttribute(new ObjectName(XPCMetrics.OBJECT_NAME), "ObjectsDecoded"));
+        } finally {
+            metrics.unregister();
+        }
+        metrics.reset();
+        assertEquals(0, metrics.getObjectsDecoded());
+    }
+}
@@ -3,15 +3,20 @@ package ca.vijaysharma.apple.xpc;
 import ca.vijaysharma.apple.xpc.exceptions.XPCException;
 import ca.vijaysharma.apple.xpc.exceptions.XPCInvalidTypeException;
 import ca.vijaysharma.apple.xpc.exceptions.XPCInvalidValueException;
+import ca.vijaysharma.apple.xpc.exceptions.XPCUncheckedException;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.time.Instant;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.jupiter.api.Assertions.*;
 
 class XPCObjectTest {
@@ -330,6 +335,39 @@ class XPCObjectTest {
                 (byte) 0x23, (byte) 0x32, (byte) 0x0, (byte) 0x00,
             }, XPCObject.bytes(new XPCData(new byte[] { (byte) 0x23, (byte) 0x32 })));
         }
+
+        @Test
+        void buffer_backed_data_encodes_like_bytes() throws XPCException {
+            var source = ByteBuffer.wrap(new byte[] { 9, 1, 2, 3, 4, 5, 9 }, 1, 5);
+            var view = new XPCDataBuffer(source);
+            assertEquals(1, source.position());
+            assertArrayEquals(
+                XPCObject.bytes(new XPCData(new byte[] { 1, 2, 3, 4, 5 })),
+                XPCObject.bytes(view)
+            );
+        }
+
+        @Test
+        void view_decode_references_source() throws XPCException {
+            var bytes = XPCObject.bytes(new XPCArray(List.of(new XPCData(new byte[] { 1, 2, 3 }))));
+            var array = (XPCArray) XPCObject.view(bytes);
+            var data = (XPCDataBuffer) array.value().get(0);
+
+            assertArrayEquals(new byte[] { 1, 2, 3 }, data.toByteArray());
+            assertTrue(data.value().isReadOnly());
+            bytes[20] = 7;
+            assertEquals(7, data.value().get(0));
+        }
+
+        @Test
+        void lazy_decode_copies_data() throws XPCException {
+            var bytes = XPCObject.bytes(new XPCArray(List.of(new XPCData(new byte[] { 1, 2, 3 }))));
+            var lazy = (XPCArray) XPCObject.lazy(bytes);
+            var wrapper = XPCWrapper.lazy(XPCWrapper.bytes(1, new XPCDictionary(Map.of("data", new XPCData(new byte[] { 4 })))));
+
+            assertArrayEquals(new byte[] { 1, 2, 3 }, ((XPCData) lazy.value().get(0)).value());
+            assertInstanceOf(XPCData.class, wrapper.payload.value().get("data"));
+        }
     }
 
     @Nested
@@ -358,6 +396,24 @@ class XPCObjectTest {
                 (byte) 0x6F, (byte) 0x00, (byte) 0x00, (byte) 0x00
             }, XPCObject.bytes(new XPCString("hello")));
         }
+
+        @Test
+        void keeps_surrounding_whitespace() throws XPCException {
+            var string = new XPCString(" hello\t\n");
+            assertEquals(string, XPCObject.from(XPCObject.bytes(string)));
+        }
+
+        @Test
+        void writes_utf8_without_intermediate_bytes() throws XPCException {
+            var value = "h\u00e9llo \u65e5\u672c \uD83D\uDE00 \uD800";
+            var encoded = value.getBytes(UTF_8);
+            var bytes = XPCObject.bytes(new XPCString(value));
+
+            assertEquals(8 + ((encoded.length + 1 + 3) & ~3), bytes.length);
+            assertEquals(encoded.length + 1, ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).getInt(4));
+            assertArrayEquals(encoded, Arrays.copyOfRange(bytes, 8, 8 + encoded.length));
+            assertEquals(new String(encoded, UTF_8), ((XPCString) XPCObject.from(bytes)).value());
+        }
     }
 
     @Nested
@@ -443,6 +499,67 @@ class XPCObjectTest {
                 )
             )));
         }
+
+        @Test
+        void packs_homogeneous_primitive_arrays() throws XPCException {
+            var longs = new XPCArray(List.of(new XPCInt64(1), new XPCInt64(-2), new XPCInt64(Long.MAX_VALUE)));
+            var doubles = new XPCArray(List.of(new XPCDouble(0.5), new XPCDouble(-1e9)));
+            var bools = new XPCArray(List.of(new XPCBool(true), new XPCBool(false)));
+
+            var decodedLongs = (XPCArray) XPCObject.from(XPCObject.bytes(longs));
+            var decodedDoubles = (XPCArray) XPCObject.from(XPCObject.bytes(doubles));
+            var decodedBools = (XPCArray) XPCObject.from(XPCObject.bytes(bools));
+
+            assertArrayEquals(new long[] { 1, -2, Long.MAX_VALUE }, ((XPCInt64Array) decodedLongs.value()).value());
+            assertArrayEquals(new double[] { 0.5, -1e9 }, ((XPCDoubleArray) decodedDoubles.value()).value());
+            assertArrayEquals(new boolean[] { true, false }, ((XPCBoolArray) decodedBools.value()).value());
+            assertEquals(longs, decodedLongs);
+            assertEquals(doubles, decodedDoubles);
+            assertEquals(bools, decodedBools);
+        }
+
+        @Test
+        void packed_arrays_encode_like_boxed_arrays() throws XPCException {
+            assertArrayEquals(
+                XPCObject.bytes(new XPCArray(List.of(new XPCInt64(7), new XPCInt64(8)))),
+                XPCObject.bytes(new XPCArray(new XPCInt64Array(new long[] { 7, 8 })))
+            );
+            assertArrayEquals(
+                XPCObject.bytes(new XPCArray(List.of(new XPCDouble(2.5)))),
+                XPCObject.bytes(new XPCArray(new XPCDoubleArray(new double[] { 2.5 })))
+            );
+            assertArrayEquals(
+                XPCObject.bytes(new XPCArray(List.of())),
+                XPCObject.bytes(new XPCArray(new XPCBoolArray(new boolean[0])))
+            );
+        }
+
+        @Test
+        void keeps_mixed_arrays_boxed() throws XPCException {
+            var mixed = new XPCArray(List.of(new XPCInt64(1), new XPCDate(Instant.ofEpochSecond(2)), new XPCInt64(3)));
+            var decoded = (XPCArray) XPCObject.from(XPCObject.bytes(mixed));
+            assertFalse(decoded.value() instanceof XPCInt64Array);
+            assertEquals(mixed, decoded);
+        }
+
+        @Test
+        void packed_array_values_are_copies() {
+            var packed = new XPCInt64Array(new long[] { 1, 2 });
+            packed.value()[0] = 9;
+            assertEquals(new XPCInt64(1), packed.get(0));
+            assertThrows(IndexOutOfBoundsException.class, () -> packed.get(2));
+        }
+
+        @Test
+        void decoded_arrays_are_read_only() throws XPCException {
+            var packed = (XPCArray) XPCObject.from(XPCObject.bytes(new XPCArray(List.of(new XPCInt64(1)))));
+            var mixed = (XPCArray) XPCObject.from(XPCObject.bytes(new XPCArray(List.of(new XPCInt64(1), new XPCBool(true)))));
+
+            for (var decoded : List.of(packed, mixed)) {
+                assertThrows(UnsupportedOperationException.class, () -> decoded.value().set(0, new XPCInt64(2)));
+                assertThrows(UnsupportedOperationException.class, () -> decoded.value().add(new XPCInt64(2)));
+            }
+        }
     }
     @Nested
     class dictionary {
@@ -471,6 +588,26 @@ class XPCObjectTest {
             assertEquals("world", value.value());
         }
 
+        @Test
+        void finds_key_terminators_at_every_offset() throws XPCException {
+            for (int length = 0; length < 24; length++) {
+                var key = "k".repeat(length) + "\u00e9";
+                var dictionary = new XPCDictionary(Map.of(key, new XPCInt64(length)));
+                assertEquals(dictionary, XPCObject.from(XPCObject.bytes(dictionary)));
+            }
+        }
+
+        @Test
+        void reuses_decoded_keys() throws XPCException {
+            var bytes = XPCObject.bytes(new XPCDictionary(Map.of("reused", new XPCNull())));
+            var first = (XPCDictionary) XPCObject.from(bytes);
+            var second = (XPCDictionary) XPCObject.from(bytes);
+            assertSame(
+                first.value().keySet().iterator().next(),
+                second.value().keySet().iterator().next()
+            );
+        }
+
         @Test
         void can_write_dictionary() throws XPCException {
             assertArrayEquals(new byte[]{
@@ -488,4 +625,77 @@ class XPCObjectTest {
             )));
         }
     }
-}
\ No newline at end of file
+
+    @Nested
+    class lazy {
+        @Test
+        void equals_eager_decode() throws XPCException {
+            var object = new XPCDictionary(Map.of(
+                "hello", new XPCString("world"),
+                "items", new XPCArray(List.of(
+                    new XPCInt64(1),
+                    new XPCDictionary(Map.of("nested", new XPCBool(true)))
+                ))
+            ));
+            var bytes = XPCObject.bytes(object);
+            var lazy = XPCObject.lazy(bytes);
+            assertInstanceOf(XPCDictionary.class, lazy);
+            assertEquals(XPCObject.from(bytes), lazy);
+            assertArrayEquals(bytes, XPCObject.bytes(lazy));
+        }
+
+        @Test
+        void decodes_values_on_access() throws XPCException {
+            byte[] bytes = {
+                (byte) 0x00, (byte) 0xf0, (byte) 0x00, (byte) 0x00,
+                (byte) 0x28, (byte) 0x00, (byte) 0x00, (byte) 0x00,
+                (byte) 0x02, (byte) 0x00, (byte) 0x00, (byte) 0x00,
+                (byte) 0x61, (byte) 0x00, (byte) 0x00, (byte) 0x00,
+                (byte) 0x00, (byte) 0x20, (byte) 0x00, (byte) 0x00,
+                (byte) 0x02, (byte) 0x00, (byte) 0x00, (byte) 0x00,
+                (byte) 0x68, (byte) 0x65, (byte) 0x6C, (byte) 0x6C,
+                (byte) 0x6F, (byte) 0x00, (byte) 0x00, (byte) 0x00,
+                (byte) 0x00, (byte) 0x90, (byte) 0x00, (byte) 0x00,
+                (byte) 0x06, (byte) 0x00, (byte) 0x00, (byte) 0x00,
+                (byte) 0x77, (byte) 0x6F, (byte) 0x72, (byte) 0x6C,
+                (byte) 0x64, (byte) 0x00, (byte) 0x00, (byte) 0x00
+            };
+            assertThrowsExactly(XPCInvalidValueException.class, () -> XPCObject.from(bytes));
+
+            var dictionary = (XPCDictionary) XPCObject.lazy(bytes);
+            assertEquals(2, dictionary.value().size());
+            assertEquals(new XPCString("world"), dictionary.value().get("hello"));
+            var error = assertThrowsExactly(
+                XPCUncheckedException.class,
+                () -> dictionary.value().get("a")
+            );
+            assertInstanceOf(XPCInvalidValueException.class, error.getCause());
+        }
+    }
+
+    @Nested
+    class byte_buffer {
+        @Test
+        void can_read_and_write_in_place() throws XPCException {
+            var object = new XPCArray(List.of(new XPCString("hello"), new XPCDouble(2.5)));
+            var buffer = ByteBuffer.allocateDirect(128).order(ByteOrder.BIG_ENDIAN);
+            XPCObject.bytes(object, buffer);
+            XPCObject.bytes(new XPCNull(), buffer);
+            assertEquals(XPCObject.size(object) + 4, buffer.position());
+            assertEquals(ByteOrder.BIG_ENDIAN, buffer.order());
+
+            buffer.flip();
+            assertEquals(object, XPCObject.from(buffer));
+            assertEquals(new XPCNull(), XPCObject.from(buffer));
+            assertFalse(buffer.hasRemaining());
+        }
+
+        @Test
+        void writes_same_bytes_as_array() throws XPCException {
+            var object = new XPCDictionary(Map.of("hello", new XPCString("world")));
+            var buffer = ByteBuffer.allocate(XPCObject.size(object));
+            XPCObject.bytes(object, buffer);
+            assertArrayEquals(XPCObject.bytes(object), buffer.array());
+        }
+    }
+}
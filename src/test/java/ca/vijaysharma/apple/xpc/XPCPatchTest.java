@@ -0,0 +1,91 @@
+package ca.vijaysharma.apple.xpc;
+
+import ca.vijaysharma.apple.xpc.exceptions.XPCException;
+import ca.vijaysharma.apple.xpc.exceptions.XPCInvalidValueException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static ca.vijaysharma.apple.xpc.XPCWrapper.XPCFlags.ALWAYS_SET;
+import static ca.vijaysharma.apple.xpc.XPCWrapper.XPCFlags.REPLY;
+import static org.junit.jupiter.api.Assertions.*;
+
+class XPCPatchTest {
+    private static final UUID SESSION = UUID.fromString("2b0e6b8c-6b59-4f4e-9c53-0b0d7a1fcd01");
+
+    private static XPCDictionary message(String name, long counter, UUID session) {
+        return new XPCDictionary(Map.of(
+            "Session", new XPCUUID(session),
+            "Body", new XPCDictionary(Map.of(
+                "counter", new XPCInt64(counter),
+                "items", new XPCArray(List.of(new XPCString(name), new XPCDouble(1.5))),
+                "tail", new XPCBool(true)
+            ))
+        ));
+    }
+
+    @Test
+    void overwrites_fixed_width_values_in_place() throws XPCException {
+        var bytes = XPCObject.bytes(message("name", 1, SESSION));
+        var patch = XPCPatch.object(bytes);
+        var session = UUID.randomUUID();
+        assertTrue(patch.set("Body.counter", new XPCInt64(42)));
+        assertTrue(patch.set("Session", new XPCUUID(session)));
+        assertTrue(patch.set("Body.items[1]", new XPCDouble(-3.25)));
+
+        assertSame(bytes, patch.bytes());
+        var expected = new XPCDictionary(Map.of(
+            "Session", new XPCUUID(session),
+            "Body", new XPCDictionary(Map.of(
+                "counter", new XPCInt64(42),
+                "items", new XPCArray(List.of(new XPCString("name"), new XPCDouble(-3.25))),
+                "tail", new XPCBool(true)
+            ))
+        ));
+        assertEquals(expected, XPCObject.from(bytes));
+    }
+
+    @Test
+    void resizes_enclosing_containers() throws XPCException {
+        var patch = XPCPatch.object(XPCObject.bytes(message("name", 1, SESSION)));
+        assertTrue(patch.set("Body.items[0]", new XPCString("a much longer name than before")));
+        assertEquals(message("a much longer name than before", 1, SESSION), XPCObject.from(patch.bytes()));
+
+        var body = new HashMap<>(message("", 1, SESSION).value());
+        body.put("Body", new XPCString("x"));
+        assertTrue(patch.set("Body", new XPCString("x")));
+        assertEquals(new XPCDictionary(body), XPCObject.from(patch.bytes()));
+    }
+
+    @Test
+    void patches_frames() throws XPCException {
+        var patch = XPCPatch.frame(XPCWrapper.bytes(5, message("name", 1, SESSION), ALWAYS_SET));
+        patch.messageId(77).flags(ALWAYS_SET, REPLY);
+        assertTrue(patch.set("Body.items[0]", new XPCString("renamed to something longer")));
+        assertFalse(patch.set("Body.missing", new XPCInt64(0)));
+
+        var frame = XPCWrapper.from(patch.bytes());
+        assertEquals(77, frame.messageId);
+        assertTrue(frame.flags.contains(REPLY));
+        assertEquals(message("renamed to something longer", 1, SESSION), frame.payload);
+    }
+
+    @Test
+    void rejects_frames_with_unsupported_protocol_version() throws XPCException {
+        var frame = XPCWrapper.bytes(5, message("name", 1, SESSION), ALWAYS_SET);
+        ByteBuffer.wrap(frame).order(ByteOrder.LITTLE_ENDIAN).putInt(XPCWrapper.HEADER_LENGTH + 4, 4);
+        assertThrowsExactly(XPCInvalidValueException.class, () -> XPCPatch.frame(frame));
+    }
+
+    @Test
+    void rejects_header_changes_outside_frames() throws XPCException {
+        var patch = XPCPatch.object(XPCObject.bytes(message("name", 1, SESSION)));
+        assertThrows(IllegalStateException.class, () -> patch.messageId(1));
+        assertFalse(XPCPatch.frame(XPCWrapper.flagsOnly(ALWAYS_SET)).set("Body", new XPCNull()));
+    }
+}
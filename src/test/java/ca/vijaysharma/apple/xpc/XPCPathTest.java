@@ -0,0 +1,74 @@
+package ca.vijaysharma.apple.xpc;
+
+import ca.vijaysharma.apple.xpc.exceptions.XPCException;
+import ca.vijaysharma.apple.xpc.exceptions.XPCInvalidValueException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.Map;
+
+import static ca.vijaysharma.apple.xpc.XPCWrapper.XPCFlags.ALWAYS_SET;
+import static org.junit.jupiter.api.Assertions.*;
+
+class XPCPathTest {
+    private static XPCDictionary request() {
+        var items = new XPCArray(List.of(
+            new XPCDictionary(Map.of("name", new XPCString("zero"))),
+            new XPCDictionary(Map.of("name", new XPCString("one"))),
+            new XPCDictionary(Map.of("name", new XPCString("two"), "size", new XPCInt64(2))),
+            new XPCDictionary(Map.of("name", new XPCString("three"), "tags", new XPCArray(List.of(new XPCString("a"), new XPCString("b")))))
+        ));
+        return new XPCDictionary(Map.of(
+            "Request", new XPCDictionary(Map.of(
+                "Id", new XPCInt64(7),
+                "Params", new XPCDictionary(Map.of("items", items, "flag", new XPCBool(true)))
+            ))
+        ));
+    }
+
+    @Test
+    void extracts_nested_values() throws XPCException {
+        var bytes = XPCObject.bytes(request());
+        assertEquals(new XPCString("three"), XPCPath.get(bytes, "Request.Params.items[3].name"));
+        assertEquals(new XPCString("b"), XPCPath.get(bytes, "Request.Params.items[3].tags[1]"));
+        assertEquals(new XPCInt64(2), XPCPath.compile("Request.Params.items[2].size").get(ByteBuffer.wrap(bytes)));
+        assertEquals(new XPCBool(true), XPCPath.of("Request", "Params", "flag").get(bytes));
+        assertEquals(request().value().get("Request"), XPCPath.get(bytes, "Request"));
+    }
+
+    @Test
+    void returns_null_for_missing_values() throws XPCException {
+        var bytes = XPCObject.bytes(request());
+        assertNull(XPCPath.get(bytes, "Request.Missing"));
+        assertNull(XPCPath.get(bytes, "Request.Params.items[4]"));
+        assertNull(XPCPath.get(bytes, "Request.Id.name"));
+        assertNull(XPCPath.get(bytes, "Request[0]"));
+    }
+
+    @Test
+    void extracts_from_frame_payload() throws XPCException {
+        var path = XPCPath.compile("Request.Params.items[1].name");
+        assertEquals(new XPCString("one"), path.getFromFrame(XPCWrapper.bytes(3, request(), ALWAYS_SET)));
+        assertNull(path.getFromFrame(XPCWrapper.flagsOnly(ALWAYS_SET)));
+    }
+
+    @Test
+    void rejects_frames_with_unsupported_protocol_version() throws XPCException {
+        var frame = XPCWrapper.bytes(3, request(), ALWAYS_SET);
+        ByteBuffer.wrap(frame).order(ByteOrder.LITTLE_ENDIAN).putInt(XPCWrapper.HEADER_LENGTH + 4, 4);
+        assertThrowsExactly(XPCInvalidValueException.class, () -> XPCWrapper.from(frame));
+        assertThrowsExactly(XPCInvalidValueException.class, () -> XPCPath.compile("Request").getFromFrame(frame));
+    }
+
+    @Test
+    void parses_paths() {
+        assertEquals(List.of("a", 1, 2, "b"), XPCPath.compile("a[1][2].b").segments());
+        assertEquals(List.of(0, "a"), XPCPath.compile("[0].a").segments());
+        assertEquals("a[1][2].b", XPCPath.compile("a[1][2].b").toString());
+        for (var invalid : List.of(".a", "a..b", "a.", "a[", "a[x]", "a[-1]")) {
+            assertThrows(IllegalArgumentException.class, () -> XPCPath.compile(invalid), invalid);
+        }
+    }
+}
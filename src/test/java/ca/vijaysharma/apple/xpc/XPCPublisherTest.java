@@ -0,0 +1,160 @@
+package ca.vijaysharma.apple.xpc;
+
+import ca.vijaysharma.apple.xpc.exceptions.XPCException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static ca.vijaysharma.apple.xpc.XPCWrapper.XPCFlags.ALWAYS_SET;
+import static org.junit.jupiter.api.Assertions.*;
+
+class XPCPublisherTest {
+    @Test
+    void reads_only_as_fast_as_requested() throws Exception {
+        var bytes = frames(10);
+        var pulled = new AtomicInteger();
+        var chunks = IntStream.range(0, bytes.length)
+            .mapToObj(index -> ByteBuffer.wrap(bytes, index, 1))
+            .peek(chunk -> pulled.incrementAndGet());
+        var subscriber = new Collector();
+        new XPCPublisher(chunks).subscribe(subscriber);
+
+        subscriber.subscription.request(1);
+        subscriber.awaitCount(1);
+        Thread.sleep(50);
+        assertEquals(1, subscriber.frames.size());
+        assertEquals(bytes.length / 10, pulled.get());
+
+        subscriber.subscription.request(Long.MAX_VALUE);
+        subscriber.completed.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L), subscriber.frames.stream().map(frame -> frame.messageId).toList());
+    }
+
+    @Test
+    void publishes_frames_from_channel() throws Exception {
+        var channel = Channels.newChannel(new ByteArrayInputStream(frames(100)));
+        var subscriber = new Collector();
+        new XPCPublisher(channel).subscribe(subscriber);
+        for (int index = 0; index < 100; index++) {
+            subscriber.subscription.request(1);
+        }
+        subscriber.awaitCount(100);
+        Thread.sleep(50);
+        assertTrue(channel.isOpen());
+        assertFalse(subscriber.completed.isDone());
+
+        // the end of the source is only read once more is requested
+        subscriber.subscription.request(1);
+        subscriber.completed.get(5, TimeUnit.SECONDS);
+        assertEquals(100, subscriber.frames.size());
+        assertFalse(channel.isOpen());
+    }
+
+    @Test
+    void fails_on_truncated_frame() throws Exception {
+        var bytes = frames(2);
+        var subscriber = new Collector();
+        new XPCPublisher(Channels.newChannel(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 4)))).subscribe(subscriber);
+        subscriber.subscription.request(5);
+
+        var error = assertThrows(Exception.class, () -> subscriber.completed.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(EOFException.class, error.getCause());
+        assertEquals(1, subscriber.frames.size());
+    }
+
+    @Test
+    void signals_invalid_request_from_drain() throws Exception {
+        var subscriber = new Collector();
+        new XPCPublisher(Channels.newChannel(new ByteArrayInputStream(frames(3)))).subscribe(subscriber);
+        subscriber.subscription.request(0);
+
+        var error = assertThrows(Exception.class, () -> subscriber.completed.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalArgumentException.class, error.getCause());
+    }
+
+    @Test
+    void fails_on_corrupt_frame() throws Exception {
+        var bytes = frames(2);
+        // the first frame's dictionary claims more bytes than its payload holds
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).putInt(XPCWrapper.HEADER_LENGTH + 12, 1024);
+        var subscriber = new Collector();
+        new XPCPublisher(Channels.newChannel(new ByteArrayInputStream(bytes))).subscribe(subscriber);
+        subscriber.subscription.request(5);
+
+        var error = assertThrows(Exception.class, () -> subscriber.completed.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(XPCException.class, error.getCause());
+        assertEquals(0, subscriber.frames.size());
+    }
+
+    @Test
+    void cancels_when_on_next_throws() throws Exception {
+        var failure = new IllegalStateException("subscriber failed");
+        var channel = Channels.newChannel(new ByteArrayInputStream(frames(3)));
+        var subscriber = new Collector() {
+            @Override
+            public void onNext(XPCWrapper item) {
+                throw failure;
+            }
+        };
+        new XPCPublisher(channel).subscribe(subscriber);
+        subscriber.subscription.request(3);
+
+        var error = assertThrows(Exception.class, () -> subscriber.completed.get(5, TimeUnit.SECONDS));
+        assertSame(failure, error.getCause());
+        assertFalse(channel.isOpen());
+    }
+
+    private static byte[] frames(int count) throws XPCException {
+        var stream = new ByteArrayOutputStream();
+        for (int index = 0; index < count; index++) {
+            stream.writeBytes(XPCWrapper.bytes(index, new XPCDictionary(Map.of("index", new XPCInt64(index))), ALWAYS_SET));
+        }
+        return stream.toByteArray();
+    }
+
+    private static class Collector implements Flow.Subscriber<XPCWrapper> {
+        final List<XPCWrapper> frames = new CopyOnWriteArrayList<>();
+        final CompletableFuture<Void> completed = new CompletableFuture<>();
+        Flow.Subscription subscription;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(XPCWrapper item) {
+            this.frames.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            this.completed.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            this.completed.complete(null);
+        }
+
+        void awaitCount(int count) throws InterruptedException {
+            while (this.frames.size() < count) {
+                Thread.sleep(1);
+            }
+        }
+    }
+}
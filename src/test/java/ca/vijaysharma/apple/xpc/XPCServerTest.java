@@ -0,0 +1,126 @@
+package ca.vijaysharma.apple.xpc;
+
+import ca.vijaysharma.apple.xpc.exceptions.XPCException;
+import ca.vijaysharma.apple.xpc.exceptions.XPCInvalidValueException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static ca.vijaysharma.apple.xpc.XPCWrapper.XPCFlags.ALWAYS_SET;
+import static ca.vijaysharma.apple.xpc.XPCWrapper.XPCFlags.REPLY;
+import static ca.vijaysharma.apple.xpc.XPCWrapper.XPCFlags.WANTING_REPLY;
+import static org.junit.jupiter.api.Assertions.*;
+
+class XPCServerTest {
+    private static final InetSocketAddress LOOPBACK = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+
+    @Test
+    void replies_to_frames_wanting_reply() throws IOException, XPCException {
+        var received = new CopyOnWriteArrayList<Long>();
+        XPCServer.Handler handler = request -> {
+            received.add(request.messageId);
+            return new XPCDictionary(Map.of("echo", new XPCInt64(request.messageId)));
+        };
+        try (var server = new XPCServer(LOOPBACK, handler).start();
+             var client = SocketChannel.open(server.address())) {
+            write(client, XPCWrapper.bytes(1, new XPCDictionary(Map.of()), ALWAYS_SET));
+            write(client, XPCWrapper.bytes(2, new XPCDictionary(Map.of()), ALWAYS_SET, WANTING_REPLY));
+
+            var reply = read(client, 1).get(0);
+            assertEquals(2, reply.messageId);
+            assertTrue(reply.flags.contains(REPLY));
+            assertEquals(new XPCInt64(2), reply.payload.value().get("echo"));
+            assertEquals(List.of(1L, 2L), received);
+        }
+    }
+
+    @Test
+    void serves_connections_concurrently() throws IOException, XPCException {
+        XPCServer.Handler handler = request -> request.payload;
+        try (var server = new XPCServer(LOOPBACK, handler).start()) {
+            var clients = new ArrayList<SocketChannel>();
+            try {
+                for (int index = 0; index < 50; index++) {
+                    var client = SocketChannel.open(server.address());
+                    clients.add(client);
+                    write(client, XPCWrapper.bytes(index, new XPCDictionary(Map.of("index", new XPCInt64(index))), ALWAYS_SET, WANTING_REPLY));
+                }
+                for (int index = 0; index < 50; index++) {
+                    assertEquals(index, read(clients.get(index), 1).get(0).messageId);
+                }
+            } finally {
+                for (var client : clients) {
+                    client.close();
+                }
+            }
+        }
+    }
+
+    @Test
+    void closes_connection_on_invalid_frame() throws Exception {
+        var errors = new CompletableFuture<Exception>();
+        try (var server = new XPCServer(LOOPBACK, request -> null).onError((remote, error) -> errors.complete(error)).start();
+             var client = SocketChannel.open(server.address())) {
+            write(client, new byte[24]);
+            assertEquals(-1, client.read(ByteBuffer.allocate(1)));
+            assertInstanceOf(XPCInvalidValueException.class, errors.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void reports_handler_failures() throws Exception {
+        var failure = new IllegalStateException("handler failed");
+        var errors = new CompletableFuture<Exception>();
+        XPCServer.Handler handler = request -> {
+            throw failure;
+        };
+        try (var server = new XPCServer(LOOPBACK, handler).onError((remote, error) -> errors.complete(error)).start();
+             var client = SocketChannel.open(server.address())) {
+            write(client, XPCWrapper.bytes(1, new XPCDictionary(Map.of()), ALWAYS_SET));
+            assertEquals(-1, client.read(ByteBuffer.allocate(1)));
+            assertSame(failure, errors.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void reads_frames_larger_than_idle_buffer() throws IOException, XPCException {
+        var payload = new XPCDictionary(Map.of("data", new XPCData(new byte[200 * 1024])));
+        try (var server = new XPCServer(LOOPBACK, request -> request.payload).start();
+             var client = SocketChannel.open(server.address())) {
+            for (int index = 0; index < 3; index++) {
+                write(client, XPCWrapper.bytes(index, payload, ALWAYS_SET, WANTING_REPLY));
+                var reply = read(client, 1).get(0);
+                assertEquals(index, reply.messageId);
+                assertEquals(200 * 1024, ((XPCData) reply.payload.value().get("data")).value().length);
+            }
+        }
+    }
+
+    private static void write(SocketChannel client, byte[] bytes) throws IOException {
+        var buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            client.write(buffer);
+        }
+    }
+
+    private static List<XPCWrapper> read(SocketChannel client, int count) throws IOException, XPCException {
+        var decoder = new XPCFrameDecoder();
+        var frames = new ArrayList<XPCWrapper>();
+        var buffer = ByteBuffer.allocate(1024);
+        while (frames.size() < count && client.read(buffer) >= 0) {
+            frames.addAll(decoder.decode(buffer.flip()));
+            buffer.clear();
+        }
+        return frames;
+    }
+}
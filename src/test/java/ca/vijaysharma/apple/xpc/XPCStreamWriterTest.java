@@ -0,0 +1,65 @@
+package ca.vijaysharma.apple.xpc;
+
+import ca.vijaysharma.apple.xpc.exceptions.XPCException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.Map;
+
+import static ca.vijaysharma.apple.xpc.XPCWrapper.XPCFlags.ALWAYS_SET;
+import static org.junit.jupiter.api.Assertions.*;
+
+class XPCStreamWriterTest {
+    @Test
+    void writes_same_bytes_as_encoder() throws XPCException {
+        var payload = new XPCDictionary(Map.of("hello", new XPCString("world")));
+        try (var writer = new XPCStreamWriter()) {
+            writer.writeObject(payload);
+            assertArrayEquals(XPCObject.bytes(payload), writer.toByteArray());
+
+            writer.reset();
+            writer.writeWrapper(3, payload, ALWAYS_SET);
+            assertArrayEquals(XPCWrapper.bytes(3, payload, ALWAYS_SET), writer.toByteArray());
+        }
+    }
+
+    @Test
+    void writes_primitives_little_endian() {
+        var writer = new XPCStreamWriter();
+        writer.write(XPCType.XPC_INT64);
+        writer.writeInt64(2);
+        assertArrayEquals(new byte[]{
+            (byte) 0x00, (byte) 0x30, (byte) 0x00, (byte) 0x00,
+            (byte) 0x02, (byte) 0x00, (byte) 0x00, (byte) 0x00,
+            (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00,
+        }, writer.toByteArray());
+        assertEquals(12, writer.toByteBuffer().remaining());
+    }
+
+    @Test
+    void reuses_pooled_buffers() throws Exception {
+        var pool = new XPCBufferPool(2, 1024 * 1024);
+        var large = new XPCArray(List.of(new XPCData(new byte[64 * 1024])));
+
+        try (var writer = new XPCStreamWriter(pool)) {
+            writer.writeObject(large);
+            var out = new ByteArrayOutputStream();
+            writer.writeTo(out);
+            assertArrayEquals(XPCObject.bytes(large), out.toByteArray());
+        }
+        assertEquals(2, pool.available());
+
+        var buffer = pool.acquire(16);
+        assertEquals(1, pool.available());
+        pool.release(buffer);
+        assertEquals(2, pool.available());
+    }
+
+    @Test
+    void does_not_retain_oversized_buffers() {
+        var pool = new XPCBufferPool(2, 8 * 1024);
+        pool.release(pool.acquire(16 * 1024));
+        assertEquals(0, pool.available());
+    }
+}
@@ -3,6 +3,8 @@ package ca.vijaysharma.apple.xpc;
 import ca.vijaysharma.apple.xpc.exceptions.XPCException;
 import org.junit.jupiter.api.Test;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.util.Map;
 
 import static ca.vijaysharma.apple.xpc.XPCType.XPC_DICTIONARY;
@@ -81,4 +83,30 @@ public class XPCWrapperTest {
             (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00
         }, XPCWrapper.flagsOnly(ALWAYS_SET));
     }
+
+    @Test
+    void can_read_and_write_frames_in_direct_buffer() throws XPCException {
+        var payload = new XPCDictionary(Map.of("hello", new XPCString("world")));
+        var buffer = ByteBuffer.allocateDirect(256);
+        buffer.position(3);
+        XPCWrapper.bytes(buffer, 5, payload, ALWAYS_SET);
+        XPCWrapper.bytes(buffer, -1, null, ALWAYS_SET);
+        assertEquals(3 + XPCWrapper.size(payload) + XPCWrapper.size(null), buffer.position());
+
+        buffer.flip().position(3);
+        var first = XPCWrapper.from(buffer);
+        assertEquals(5, first.messageId);
+        assertEquals(payload, first.payload);
+        var second = XPCWrapper.from(buffer);
+        assertNull(second.payload);
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    void does_not_write_frame_that_does_not_fit() {
+        var payload = new XPCDictionary(Map.of("hello", new XPCString("world")));
+        var buffer = ByteBuffer.allocate(30);
+        assertThrowsExactly(BufferOverflowException.class, () -> XPCWrapper.bytes(buffer, 5, payload, ALWAYS_SET));
+        assertEquals(0, buffer.position());
+    }
 }